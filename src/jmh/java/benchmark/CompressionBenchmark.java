@@ -0,0 +1,124 @@
+package benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dto.MessageDTO;
+
+// CPU per payload against bytes saved, for one MessageDTO (a STOMP frame) up to a 200-message history
+// page (a REST response). deflate is permessage-deflate as Tomcat runs it: raw deflate, sync-flushed
+// per frame, window kept across frames; deflate_reset drops the window each frame (no_context_takeover);
+// gzip is HTTP response compression. Setup prints raw and compressed sizes, averaged over distinct
+// payloads sent in sequence, to set against ns/op when tuning server.compression.min-response-size
+// or chat.websocket.deflate.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompressionBenchmark {
+	private static final int VARIANTS = 64;
+	private static final String[] WORDS = { "hey", "are", "we", "still", "on", "for", "lunch", "tomorrow", "I",
+			"can", "book", "the", "usual", "place", "sure", "sounds", "good", "see", "you", "at", "noon", "running",
+			"late", "sorry", "traffic", "thanks", "meeting", "moved", "to", "three", "ok", "call", "me", "later" };
+
+	@Param({ "1", "10", "50", "200" })
+	int messages;
+
+	@Param({ "deflate", "deflate_reset", "gzip" })
+	String codec;
+
+	byte[][] payloads;
+	Deflater deflater;
+	byte[] buffer;
+	int next;
+
+	@Setup
+	public void setup() throws IOException {
+		ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		Random random = new Random(42);
+		LocalDateTime sentAt = LocalDateTime.of(2026, 3, 14, 12, 30, 15);
+		payloads = new byte[VARIANTS][];
+		int id = 100000;
+		for (int v = 0; v < VARIANTS; v++) {
+			List<MessageDTO> page = new ArrayList<>(messages);
+			for (int i = 0; i < messages; i++) {
+				sentAt = sentAt.plusSeconds(1 + random.nextInt(300));
+				boolean fromLow = random.nextBoolean();
+				page.add(new MessageDTO(id++, text(random), sentAt, "SENT", fromLow ? 42 : 43, fromLow ? 43 : 42));
+			}
+			payloads[v] = messages == 1 ? objectMapper.writeValueAsBytes(page.get(0)) : objectMapper.writeValueAsBytes(page);
+		}
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		buffer = new byte[64 * 1024];
+
+		long raw = 0;
+		long compressed = 0;
+		for (byte[] payload : payloads) {
+			raw += payload.length;
+			compressed += compress(payload);
+		}
+		System.out.printf("%n%s, %d message(s): %d bytes raw, %d compressed (%.0f%%)%n", codec, messages,
+				raw / VARIANTS, compressed / VARIANTS, 100.0 * compressed / raw);
+		deflater.reset();
+	}
+
+	@TearDown
+	public void tearDown() {
+		deflater.end();
+	}
+
+	@Benchmark
+	public int compress() throws IOException {
+		return compress(payloads[next++ % VARIANTS]);
+	}
+
+	private int compress(byte[] payload) throws IOException {
+		if ("gzip".equals(codec)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2);
+			try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+				gzip.write(payload);
+			}
+			return out.size();
+		}
+		if ("deflate_reset".equals(codec)) {
+			deflater.reset();
+		}
+		deflater.setInput(payload);
+		int length = 0;
+		int written;
+		do {
+			written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+			length += written;
+		} while (written == buffer.length);
+		// the frame drops the 00 00 ff ff tail of the sync flush
+		return length - 4;
+	}
+
+	private static String text(Random random) {
+		StringBuilder text = new StringBuilder();
+		int words = 3 + random.nextInt(15);
+		for (int i = 0; i < words; i++) {
+			text.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,96 @@
+package benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import config.ChatDestinations;
+
+// broker-side cost of one chat send with N connected sessions:
+// the old global /topic/message broadcast vs. a per-conversation topic
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FanOutBenchmark {
+
+	@Param({"1000", "10000"})
+	int sessions;
+
+	SimpleBrokerMessageHandler broadcastBroker;
+	SimpleBrokerMessageHandler conversationBroker;
+	final LongAdder delivered = new LongAdder();
+	final byte[] payload = "{\"id\":1,\"messageText\":\"hello\",\"senderId\":1,\"receiverId\":2}"
+			.getBytes(StandardCharsets.UTF_8);
+
+	@Setup(Level.Trial)
+	public void setup() {
+		broadcastBroker = broker();
+		conversationBroker = broker();
+		for (int i = 0; i < sessions; i++) {
+			subscribe(broadcastBroker, "s" + i, "/topic/message");
+			// every two sessions share one conversation
+			int low = (i / 2) * 2;
+			subscribe(conversationBroker, "s" + i, ChatDestinations.conversationTopic(low, low + 1));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		broadcastBroker.stop();
+		conversationBroker.stop();
+	}
+
+	@Benchmark
+	public void globalBroadcast() {
+		broadcastBroker.handleMessage(message("/topic/message"));
+	}
+
+	@Benchmark
+	public void perConversationTopic() {
+		conversationBroker.handleMessage(message(ChatDestinations.conversationTopic(0, 1)));
+	}
+
+	private SimpleBrokerMessageHandler broker() {
+		MessageChannel outbound = (message, timeout) -> {
+			delivered.increment();
+			return true;
+		};
+		SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(),
+				outbound, new ExecutorSubscribableChannel(), List.of("/topic", "/queue"));
+		broker.start();
+		return broker;
+	}
+
+	private static void subscribe(SimpleBrokerMessageHandler broker, String sessionId, String destination) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId("sub-0");
+		accessor.setDestination(destination);
+		broker.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+	}
+
+	private Message<byte[]> message(String destination) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setDestination(destination);
+		return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+	}
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import dto.JwtPrincipal;
+import entities.User;
+import entities.User.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import service.JwtService;
+
+// cost of authenticating one request: the old filter path vs. JwtService.parse
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtServiceBenchmark {
+	static final String SECRET = "lB3v9zfxmoA6tvNfCHO5NnJ6iYgjdE/SOBvfTz/EslD4jxIPlZz9ffcqPLg31vBj";
+
+	JwtService jwtService;
+	JwtService uncachedJwtService;
+	String token;
+
+	@Setup
+	public void setup() {
+		jwtService = new JwtService(SECRET, 10_000, new SimpleMeterRegistry());
+		uncachedJwtService = new JwtService(SECRET, 0, new SimpleMeterRegistry());
+		token = jwtService.generateToken(new User(42, "bench", "bench@example.com", "x", Role.USER));
+	}
+
+	// what doFilterInternal did before: validate, role, id, each rebuilding key + parser
+	@Benchmark
+	public void legacyThreeParses(Blackhole bh) {
+		bh.consume(legacyClaims(token).getExpiration().after(new Date()));
+		bh.consume(Role.valueOf(legacyClaims(token).get("role", String.class)));
+		bh.consume(Long.valueOf(legacyClaims(token).getSubject()));
+	}
+
+	@Benchmark
+	public JwtPrincipal parseCached() {
+		return jwtService.parse(token);
+	}
+
+	@Benchmark
+	public Long parseOnceNoCache() {
+		return uncachedJwtService.getIdFromToken(token);
+	}
+
+	// what the filter and STOMP CONNECT pay per request once the token has been seen
+	@Benchmark
+	public boolean validateToken() {
+		return jwtService.validateToken(token);
+	}
+
+	@Benchmark
+	public boolean validateTokenNoCache() {
+		return uncachedJwtService.validateToken(token);
+	}
+
+	@Benchmark
+	public String generateToken() {
+		return jwtService.generateToken(new User(42, "bench", "bench@example.com", "x", Role.USER));
+	}
+
+	private static Claims legacyClaims(String token) {
+		return Jwts.parser()
+				.verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+				.build()
+				.parseSignedClaims(token)
+				.getPayload();
+	}
+}
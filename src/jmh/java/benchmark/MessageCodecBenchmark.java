@@ -0,0 +1,124 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import config.CompactPayloads;
+import dto.MessageDTO;
+
+// per-message wire cost of /app/sendMessage: the MessageDTO body (mapper built the way the STOMP
+// converters build it) and the STOMP SEND frame around it, each way, for the default JSON and the
+// per-session CBOR encoding. Body and frame sizes, single and for a history page, are printed by setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageCodecBenchmark {
+	private static final int PAGE_SIZE = 50;
+
+	@Param({ "json", "cbor" })
+	String format;
+
+	ObjectMapper objectMapper;
+	MimeType contentType;
+	StompEncoder encoder;
+	StompDecoder decoder;
+	MessageDTO message;
+	List<MessageDTO> page;
+	byte[] body;
+	byte[] jsonBody;
+	Message<byte[]> sendFrame;
+	byte[] encodedFrame;
+
+	@Setup
+	public void setup() throws IOException {
+		boolean cbor = "cbor".equals(format);
+		objectMapper = cbor ? Jackson2ObjectMapperBuilder.cbor().build() : Jackson2ObjectMapperBuilder.json().build();
+		contentType = cbor ? CompactPayloads.APPLICATION_CBOR : MimeTypeUtils.APPLICATION_JSON;
+		encoder = new StompEncoder();
+		decoder = new StompDecoder();
+		message = new MessageDTO(123456, "Hey, are we still on for lunch tomorrow? I can book the usual place.",
+				LocalDateTime.of(2026, 3, 14, 12, 30, 15), "SENT", 42, 43);
+		page = new ArrayList<>();
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			page.add(new MessageDTO(123456 + i, "Message number " + i + " of the page, a typical short line of chat.",
+					LocalDateTime.of(2026, 3, 14, 12, 30, 15).plusSeconds(i * 7), "SEEN", 42 + i % 2, 43 - i % 2));
+		}
+		body = objectMapper.writeValueAsBytes(message);
+		jsonBody = Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(message);
+		sendFrame = frame(body);
+		encodedFrame = encoder.encode(sendFrame);
+		System.out.printf("%n%s: message body %d bytes, SEND frame %d bytes, %d-message page %d bytes%n", format,
+				body.length, encodedFrame.length, PAGE_SIZE, objectMapper.writeValueAsBytes(page).length);
+	}
+
+	@Benchmark
+	public byte[] serializeMessage() throws IOException {
+		return objectMapper.writeValueAsBytes(message);
+	}
+
+	@Benchmark
+	public MessageDTO deserializeMessage() throws IOException {
+		return objectMapper.readValue(body, MessageDTO.class);
+	}
+
+	@Benchmark
+	public byte[] serializePage() throws IOException {
+		return objectMapper.writeValueAsBytes(page);
+	}
+
+	// what the server adds per CBOR session on delivery (same work for either param value)
+	@Benchmark
+	public byte[] transcodeToCbor() throws IOException {
+		return CompactPayloads.jsonToCbor(jsonBody);
+	}
+
+	@Benchmark
+	public byte[] encodeSendFrame() {
+		return encoder.encode(sendFrame);
+	}
+
+	@Benchmark
+	public List<Message<byte[]>> decodeSendFrame() {
+		return decoder.decode(ByteBuffer.wrap(encodedFrame));
+	}
+
+	// client side and server side of one send: body, frame, frame back, body back
+	@Benchmark
+	public MessageDTO sendRoundTrip() throws IOException {
+		byte[] wire = encoder.encode(frame(objectMapper.writeValueAsBytes(message)));
+		Message<byte[]> decoded = decoder.decode(ByteBuffer.wrap(wire)).get(0);
+		return objectMapper.readValue(decoded.getPayload(), MessageDTO.class);
+	}
+
+	private Message<byte[]> frame(byte[] body) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+		accessor.setDestination("/app/sendMessage");
+		accessor.setContentType(contentType);
+		accessor.setContentLength(body.length);
+		return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+	}
+}
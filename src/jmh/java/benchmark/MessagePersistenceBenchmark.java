@@ -0,0 +1,152 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import dto.MessageDTO;
+import entities.Message;
+import entities.Message.Status;
+import entities.User;
+import entities.User.Role;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import repository.MessageRepository;
+import service.MessageArchiveService;
+import service.MessageIdAllocator;
+import service.MessageService;
+import service.ReadYourWritesGuard;
+
+// MessageService against an embedded MariaDB, because the conversation/unread upserts and the id
+// allocator are MySQL SQL that H2 does not run. The schema comes from the entities, as in
+// MessageRepositoryTests, plus the messages_seq table the allocator needs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessagePersistenceBenchmark {
+
+	// write-behind flush size, chat.persistence.batch-size
+	static final int BATCH_SIZE = 50;
+
+	DB database;
+	ConfigurableApplicationContext context;
+	MessageService messageService;
+	MessageRepository messageRepository;
+	User alice;
+	User bob;
+	int sent;
+
+	@SpringBootConfiguration
+	@ImportAutoConfiguration({ DataSourceAutoConfiguration.class, DataSourceTransactionManagerAutoConfiguration.class,
+			JdbcTemplateAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+			TransactionAutoConfiguration.class })
+	@EntityScan("entities")
+	@EnableJpaRepositories("repository")
+	@Import({ MessageService.class, MessageIdAllocator.class, MessageArchiveService.class, ReadYourWritesGuard.class })
+	static class PersistenceContext {
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+		config.setPort(0);
+		if ("root".equals(System.getProperty("user.name"))) {
+			config.addArg("--user=root"); // mariadbd refuses to run as root otherwise
+		}
+		database = DB.newEmbeddedDB(config.build());
+		database.start();
+
+		// command-line args outrank application.yaml, so only the connection is swapped out
+		context = new SpringApplicationBuilder(PersistenceContext.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.datasource.url=jdbc:mysql://localhost:" + config.getPort()
+								+ "/chat?createDatabaseIfNotExist=true&rewriteBatchedStatements=true",
+						"--spring.datasource.username=root",
+						"--spring.datasource.password=",
+						"--spring.jpa.hibernate.ddl-auto=create-only",
+						"--spring.jpa.show-sql=false",
+						"--logging.level.root=WARN");
+		messageService = context.getBean(MessageService.class);
+		messageRepository = context.getBean(MessageRepository.class);
+
+		JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+		jdbc.execute("CREATE TABLE messages_seq (next_val BIGINT NOT NULL)");
+		jdbc.update("INSERT INTO messages_seq (next_val) VALUES (1)");
+		jdbc.update("INSERT INTO user (name, email, password, role) VALUES ('alice', 'alice@example.com', 'x', 'USER')");
+		jdbc.update("INSERT INTO user (name, email, password, role) VALUES ('bob', 'bob@example.com', 'x', 'USER')");
+		List<Integer> ids = jdbc.queryForList("SELECT id FROM user ORDER BY id", Integer.class);
+		alice = new User(ids.get(0), "alice", "alice@example.com", "x", Role.USER);
+		bob = new User(ids.get(1), "bob", "bob@example.com", "x", Role.USER);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		context.close();
+		database.stop();
+	}
+
+	// chat.persistence.mode=sync: one transaction per message
+	@Benchmark
+	public Message saveMessage() {
+		return messageService.saveMessage(message());
+	}
+
+	// chat.persistence.mode=write-behind: one transaction and one JDBC batch per flush
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void saveMessages() {
+		List<Message> batch = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			batch.add(message());
+		}
+		messageService.saveMessages(batch);
+	}
+
+	// opening a chat: the newest page of the conversation
+	@Benchmark
+	public List<MessageDTO> latestChatPage() {
+		return messageRepository.findLatestChatPage(alice.getId(), bob.getId(), Limit.of(50));
+	}
+
+	private Message message() {
+		boolean fromAlice = sent++ % 2 == 0;
+		Message message = new Message(null, "benchmark message " + sent, fromAlice ? alice : bob,
+				fromAlice ? bob : alice, Status.SENT);
+		// as MessagePersistencePipeline does, before the save transaction
+		messageService.assignId(message);
+		return message;
+	}
+}
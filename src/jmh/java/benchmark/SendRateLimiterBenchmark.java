@@ -0,0 +1,57 @@
+package benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import config.SendRateLimiter;
+import config.SendRateLimiter.Decision;
+import config.SendRateLimiter.Limit;
+import entities.User.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// what the inbound rate limit adds to every SEND frame: bucket lookup among many users plus the CAS.
+// allowed never runs dry; rejected is a flood against an empty bucket (counter increment, no CAS).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SendRateLimiterBenchmark {
+	private static final int USERS = 10_000;
+
+	@Param({ "allowed", "rejected" })
+	String traffic;
+
+	SendRateLimiter limiter;
+
+	@Setup
+	public void setup() {
+		Limit limit = "allowed".equals(traffic) ? new Limit(1e9, Integer.MAX_VALUE / 2) : new Limit(0.001, 1);
+		limiter = new SendRateLimiter(new SimpleMeterRegistry(), true, limit, Map.of(), 0, System::nanoTime);
+		for (long user = 0; user < USERS; user++) {
+			limiter.acquire(user, Role.USER);
+		}
+	}
+
+	@Benchmark
+	public Decision acquire(ThreadUser user) {
+		return limiter.acquire(user.next(), Role.USER);
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadUser {
+		long counter;
+
+		Long next() {
+			// boxed ids as they come off the principal, mostly outside the Long cache
+			return Long.valueOf((counter++ * 7919) % USERS);
+		}
+	}
+}
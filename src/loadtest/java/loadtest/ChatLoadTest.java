@@ -0,0 +1,197 @@
+package loadtest;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import config.CompactPayloads;
+
+// End-to-end latency of /app/sendMessage -> convertAndSendToUser: N simulated users log in, connect
+// over SockJS/STOMP and send at a fixed rate to partners picked by the topology; the report has
+// delivered throughput and p50/p99/p999 latency of messages sent after the warmup.
+//
+// Arguments (name=value): clients, rate (messages/s per client), warmup and duration (seconds),
+// drain (seconds to wait for stragglers), topology (pairs | ring | random), format (json over SockJS |
+// cbor over the plain WebSocket endpoint), target (base url of a running server, default: start one on
+// an embedded MariaDB), out (JSON report file).
+public class ChatLoadTest {
+
+	enum Topology {
+		// i <-> i^1, every user in exactly one conversation
+		PAIRS,
+		// i -> i+1, every user receives from one and sends to another
+		RING,
+		// every send goes to a random other user
+		RANDOM
+	}
+
+	enum Format {
+		JSON,
+		CBOR
+	}
+
+	record Options(int clients, double rate, int warmup, int duration, int drain, Topology topology, Format format,
+			String target, String out) {
+
+		static Options parse(String[] args) {
+			Map<String, String> values = new HashMap<>();
+			for (String arg : args) {
+				int eq = arg.indexOf('=');
+				if (eq <= 0) {
+					throw new IllegalArgumentException("Expected name=value, got " + arg);
+				}
+				values.put(arg.substring(0, eq), arg.substring(eq + 1));
+			}
+			Options options = new Options(
+					Integer.parseInt(values.getOrDefault("clients", "100")),
+					Double.parseDouble(values.getOrDefault("rate", "2")),
+					Integer.parseInt(values.getOrDefault("warmup", "5")),
+					Integer.parseInt(values.getOrDefault("duration", "30")),
+					Integer.parseInt(values.getOrDefault("drain", "5")),
+					Topology.valueOf(values.getOrDefault("topology", "pairs").toUpperCase()),
+					Format.valueOf(values.getOrDefault("format", "json").toUpperCase()),
+					values.get("target"),
+					values.get("out"));
+			if (options.clients() < 2 || options.rate() <= 0) {
+				throw new IllegalArgumentException("Need at least 2 clients and a positive rate");
+			}
+			return options;
+		}
+	}
+
+	public static void main(String[] args) {
+		int status = 0;
+		try {
+			runAndReport(Options.parse(args));
+		} catch (Exception e) {
+			e.printStackTrace();
+			status = 1;
+		}
+		// the SockJS client and the embedded server leave non-daemon threads behind
+		System.exit(status);
+	}
+
+	private static void runAndReport(Options options) throws Exception {
+		try (EmbeddedChatServer server = options.target() == null ? EmbeddedChatServer.start() : null) {
+			String baseUrl = server != null ? server.baseUrl() : options.target();
+			Map<String, Object> report = run(options, baseUrl);
+			String json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+			System.out.println(json);
+			if (options.out() != null) {
+				Path out = Path.of(options.out());
+				if (out.getParent() != null) {
+					Files.createDirectories(out.getParent());
+				}
+				Files.writeString(out, json);
+			}
+		}
+	}
+
+	static Map<String, Object> run(Options options, String baseUrl) throws Exception {
+		ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		LoadRecorder recorder = new LoadRecorder();
+		HttpClient http = HttpClient.newHttpClient();
+
+		WebSocketStompClient stompClient = stompClient(options.format(), objectMapper);
+
+		List<SimulatedClient> clients = new ArrayList<>(options.clients());
+		for (int i = 0; i < options.clients(); i++) {
+			SimulatedClient client = new SimulatedClient(i, options.format(), recorder);
+			client.login(http, objectMapper, baseUrl);
+			client.connect(stompClient, baseUrl);
+			clients.add(client);
+		}
+
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+				Math.max(2, Runtime.getRuntime().availableProcessors()));
+		long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate());
+		for (int i = 0; i < clients.size(); i++) {
+			SimulatedClient client = clients.get(i);
+			int index = i;
+			// spread the clients over one period instead of sending in lockstep
+			scheduler.scheduleAtFixedRate(() -> {
+				try {
+					client.send(partner(options, clients, index).userId());
+				} catch (RuntimeException e) {
+					// a throwing task would silently stop repeating
+					recorder.error();
+				}
+			}, ThreadLocalRandom.current().nextLong(periodNanos), periodNanos, TimeUnit.NANOSECONDS);
+		}
+
+		TimeUnit.SECONDS.sleep(options.warmup());
+		recorder.startMeasuring();
+		TimeUnit.SECONDS.sleep(options.duration());
+		scheduler.shutdownNow();
+		scheduler.awaitTermination(5, TimeUnit.SECONDS);
+
+		long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.drain());
+		while (recorder.delivered() < recorder.sent() && System.nanoTime() < drainUntil) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+		clients.forEach(SimulatedClient::disconnect);
+		stompClient.stop();
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("clients", options.clients());
+		report.put("ratePerClient", options.rate());
+		report.put("topology", options.topology().name().toLowerCase());
+		report.put("format", options.format().name().toLowerCase());
+		report.put("durationSeconds", options.duration());
+		report.putAll(recorder.report(options.duration()));
+		return report;
+	}
+
+	private static WebSocketStompClient stompClient(Format format, ObjectMapper objectMapper) {
+		if (format == Format.CBOR) {
+			// CBOR bodies arrive as application/octet-stream with payload-format:cbor, see CompactPayloads
+			WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+			MappingJackson2MessageConverter cbor = new MappingJackson2MessageConverter(
+					CompactPayloads.APPLICATION_CBOR, MimeTypeUtils.APPLICATION_OCTET_STREAM);
+			cbor.setObjectMapper(Jackson2ObjectMapperBuilder.cbor().build());
+			stompClient.setMessageConverter(new CompositeMessageConverter(List.of(new StringMessageConverter(), cbor)));
+			return stompClient;
+		}
+		WebSocketStompClient stompClient = new WebSocketStompClient(
+				new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+		MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+		converter.setObjectMapper(objectMapper);
+		stompClient.setMessageConverter(converter);
+		return stompClient;
+	}
+
+	private static SimulatedClient partner(Options options, List<SimulatedClient> clients, int index) {
+		int size = clients.size();
+		return switch (options.topology()) {
+			// an odd last client has no pair and talks to the one before it
+			case PAIRS -> clients.get((index ^ 1) < size ? index ^ 1 : index - 1);
+			case RING -> clients.get((index + 1) % size);
+			case RANDOM -> {
+				int other = ThreadLocalRandom.current().nextInt(size - 1);
+				yield clients.get(other >= index ? other + 1 : other);
+			}
+		};
+	}
+}
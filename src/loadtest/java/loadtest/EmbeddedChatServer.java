@@ -0,0 +1,64 @@
+package loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import my_app.MyAppApplication;
+
+// the whole application on a random port, backed by an embedded MariaDB. As in the persistence
+// benchmark, the schema comes from the entities (the Flyway scripts predate them) plus messages_seq.
+final class EmbeddedChatServer implements AutoCloseable {
+	private final DB database;
+	private final ConfigurableApplicationContext context;
+
+	private EmbeddedChatServer(DB database, ConfigurableApplicationContext context) {
+		this.database = database;
+		this.context = context;
+	}
+
+	static EmbeddedChatServer start() throws Exception {
+		DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+		config.setPort(0);
+		if ("root".equals(System.getProperty("user.name"))) {
+			config.addArg("--user=root"); // mariadbd refuses to run as root otherwise
+		}
+		DB database = DB.newEmbeddedDB(config.build());
+		database.start();
+
+		Path indexDir = Files.createTempDirectory("chat-loadtest-index");
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(MyAppApplication.class)
+				.run("--server.port=0",
+						"--spring.datasource.url=jdbc:mysql://localhost:" + config.getPort()
+								+ "/chat?createDatabaseIfNotExist=true&rewriteBatchedStatements=true",
+						"--spring.datasource.username=root",
+						"--spring.datasource.password=",
+						"--spring.flyway.enabled=false",
+						"--spring.jpa.hibernate.ddl-auto=create-only",
+						"--chat.search.index-dir=" + indexDir,
+						"--chat.archive.enabled=false",
+						"--logging.level.root=WARN",
+						"--logging.level.org.springframework.web=WARN",
+						"--logging.level.org.springframework.security=WARN");
+
+		JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+		jdbc.execute("CREATE TABLE IF NOT EXISTS messages_seq (next_val BIGINT NOT NULL)");
+		jdbc.update("INSERT INTO messages_seq (next_val) VALUES (1)");
+		return new EmbeddedChatServer(database, context);
+	}
+
+	String baseUrl() {
+		return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+	}
+
+	@Override
+	public void close() throws Exception {
+		context.close();
+		database.stop();
+	}
+}
@@ -0,0 +1,74 @@
+package loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+// sender-to-receiver latency of messages sent after the warmup; the send time travels in the message
+// text, both ends run in this JVM so System.nanoTime is comparable
+final class LoadRecorder {
+	private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+	private final Histogram latency = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private volatile long measureFrom = Long.MAX_VALUE;
+
+	void startMeasuring() {
+		measureFrom = System.nanoTime();
+	}
+
+	void sent(long sentAt) {
+		if (sentAt >= measureFrom) {
+			sent.increment();
+		}
+	}
+
+	void delivered(long sentAt) {
+		long elapsed = System.nanoTime() - sentAt;
+		if (sentAt >= measureFrom) {
+			delivered.increment();
+			latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(elapsed), HIGHEST_MICROS));
+		}
+	}
+
+	void error() {
+		errors.increment();
+	}
+
+	long sent() {
+		return sent.sum();
+	}
+
+	long delivered() {
+		return delivered.sum();
+	}
+
+	Map<String, Object> report(long measuredSeconds) {
+		Map<String, Object> latencyMs = new LinkedHashMap<>();
+		latencyMs.put("p50", millis(latency.getValueAtPercentile(50)));
+		latencyMs.put("p90", millis(latency.getValueAtPercentile(90)));
+		latencyMs.put("p99", millis(latency.getValueAtPercentile(99)));
+		latencyMs.put("p999", millis(latency.getValueAtPercentile(99.9)));
+		latencyMs.put("max", millis(latency.getMaxValue()));
+		latencyMs.put("mean", Math.round(latency.getMean()) / 1000.0);
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("sent", sent.sum());
+		report.put("delivered", delivered.sum());
+		report.put("lost", Math.max(0, sent.sum() - delivered.sum()));
+		report.put("errors", errors.sum());
+		report.put("throughputPerSecond", measuredSeconds == 0 ? 0 : delivered.sum() / measuredSeconds);
+		report.put("latencyMs", latencyMs);
+		return report;
+	}
+
+	private static double millis(long micros) {
+		return micros / 1000.0;
+	}
+}
@@ -0,0 +1,149 @@
+package loadtest;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import config.ChatDestinations;
+import config.CompactPayloads;
+import dto.MessageDTO;
+
+// one chat user: registers and logs in over HTTP, then sends and receives over STOMP (SockJS for JSON, plain WebSocket for CBOR)
+final class SimulatedClient extends StompSessionHandlerAdapter {
+	private final int index;
+	private final ChatLoadTest.Format format;
+	private final LoadRecorder recorder;
+	private Integer userId;
+	private String token;
+	private StompSession session;
+	private volatile boolean closing;
+
+	SimulatedClient(int index, ChatLoadTest.Format format, LoadRecorder recorder) {
+		this.index = index;
+		this.format = format;
+		this.recorder = recorder;
+	}
+
+	Integer userId() {
+		return userId;
+	}
+
+	// registering an existing email fails, which is fine when rerunning against the same server
+	void login(HttpClient http, ObjectMapper objectMapper, String baseUrl) throws Exception {
+		String email = "loadtest-" + index + "@example.com";
+		post(http, objectMapper, baseUrl + "/user/register",
+				Map.of("name", "loadtest-" + index, "email", email, "password", "loadtest", "role", "USER"));
+		HttpResponse<String> response = post(http, objectMapper, baseUrl + "/login",
+				Map.of("email", email, "password", "loadtest"));
+		if (response.statusCode() != 200) {
+			throw new IllegalStateException("Login failed for " + email + ": " + response.body());
+		}
+		JsonNode body = objectMapper.readTree(response.body());
+		token = body.path("token").asText();
+		userId = body.path("user").path("id").asInt();
+	}
+
+	void connect(WebSocketStompClient stompClient, String baseUrl) throws Exception {
+		StompHeaders connectHeaders = new StompHeaders();
+		connectHeaders.add("Authorization", "Bearer " + token);
+		String url = baseUrl + "/ws";
+		if (format == ChatLoadTest.Format.CBOR) {
+			connectHeaders.add(CompactPayloads.ACCEPT_HEADER, CompactPayloads.APPLICATION_CBOR.toString());
+			url = baseUrl.replaceFirst("^http", "ws") + "/stomp";
+		}
+		session = stompClient.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, this)
+				.get(30, TimeUnit.SECONDS);
+		session.subscribe("/user" + ChatDestinations.USER_MESSAGES, new StompFrameHandler() {
+			@Override
+			public Type getPayloadType(StompHeaders headers) {
+				return MessageDTO.class;
+			}
+
+			// the send time rides in the text and comes back in the delivered MessageDTO
+			@Override
+			public void handleFrame(StompHeaders headers, Object payload) {
+				recorder.delivered(Long.parseLong(((MessageDTO) payload).getMessageText()));
+			}
+		});
+		session.subscribe("/user/queue/errors", new StompFrameHandler() {
+			@Override
+			public Type getPayloadType(StompHeaders headers) {
+				return String.class;
+			}
+
+			@Override
+			public void handleFrame(StompHeaders headers, Object payload) {
+				recorder.error();
+			}
+		});
+	}
+
+	void send(Integer receiverId) {
+		long now = System.nanoTime();
+		MessageDTO message = new MessageDTO();
+		message.setSenderId(userId);
+		message.setReceiverId(receiverId);
+		message.setMessageText(Long.toString(now));
+		StompHeaders headers = new StompHeaders();
+		headers.setDestination("/app/sendMessage");
+		if (format == ChatLoadTest.Format.CBOR) {
+			// octet-stream is what makes the client write a binary frame
+			headers.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+			headers.set(CompactPayloads.FORMAT_HEADER, CompactPayloads.CBOR);
+		}
+		session.send(headers, message);
+		recorder.sent(now);
+	}
+
+	void disconnect() {
+		closing = true;
+		if (session != null && session.isConnected()) {
+			session.disconnect();
+		}
+	}
+
+	// frames reaching the session handler are ERROR frames, e.g. a SUBSCRIBE the server rejected;
+	// the server also answers a DISCONNECT with ERROR "Session closed.", which is not a failure
+	@Override
+	public void handleFrame(StompHeaders headers, Object payload) {
+		if (!closing) {
+			recorder.error();
+		}
+	}
+
+	@Override
+	public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+			Throwable exception) {
+		recorder.error();
+	}
+
+	@Override
+	public void handleTransportError(StompSession session, Throwable exception) {
+		recorder.error();
+	}
+
+	private static HttpResponse<String> post(HttpClient http, ObjectMapper objectMapper, String url, Object body)
+			throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+				.build();
+		return http.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+}
@@ -0,0 +1,33 @@
+package config;
+
+// STOMP destinations clients may subscribe to, shared by the controller and the inbound interceptor
+public final class ChatDestinations {
+	public static final String CONVERSATION_PREFIX = "/topic/conversation.";
+	public static final String USER_MESSAGES = "/queue/messages";
+	public static final String USER_RECEIPTS = "/queue/receipts";
+	public static final String USER_SYNC = "/queue/sync";
+	public static final String PRESENCE = "/topic/presence";
+
+	private ChatDestinations() {
+	}
+
+	// /topic/conversation.{low}-{high}, one per user pair
+	public static String conversationTopic(Integer userId1, Integer userId2) {
+		return CONVERSATION_PREFIX + Math.min(userId1, userId2) + "-" + Math.max(userId1, userId2);
+	}
+
+	public static boolean isParticipant(String destination, Long userId) {
+		String pair = destination.substring(CONVERSATION_PREFIX.length());
+		int dash = pair.indexOf('-');
+		if (dash < 0 || userId == null) {
+			return false;
+		}
+		try {
+			long low = Long.parseLong(pair.substring(0, dash));
+			long high = Long.parseLong(pair.substring(dash + 1));
+			return low <= high && (userId == low || userId == high);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// CBOR bodies as an opt-in per STOMP session, JSON stays the default. SockJS transports are text only,
+// so CBOR is offered on the plain WebSocket endpoint: the client sends accept-content-type:application/cbor
+// on CONNECT. Spring only writes binary WebSocket frames for application/octet-stream, so CBOR bodies go
+// out with that content-type and payload-format:cbor; SENDs may use either label.
+@Component
+public class CompactPayloads {
+	private static final Logger log = LoggerFactory.getLogger(CompactPayloads.class);
+
+	public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+	public static final String ACCEPT_HEADER = "accept-content-type";
+	public static final String FORMAT_HEADER = "payload-format";
+	public static final String CBOR = "cbor";
+
+	// set by the handshake of the plain WebSocket endpoint, read back from the CONNECT frame
+	private static final String BINARY_TRANSPORT = CompactPayloads.class.getName() + ".binary";
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+
+	private final boolean enabled;
+	private final MappingJackson2MessageConverter converter;
+	private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+	private final Counter transcoded;
+
+	CompactPayloads(Jackson2ObjectMapperBuilder objectMapperBuilder, MeterRegistry meterRegistry,
+			@Value("${chat.websocket.cbor.enabled:true}") boolean enabled) {
+		this.enabled = enabled;
+		// same modules and date handling as the JSON converter, only the wire format differs
+		this.converter = new MappingJackson2MessageConverter(APPLICATION_CBOR);
+		this.converter.setObjectMapper(objectMapperBuilder.factory(new CBORFactory()).build());
+		// without this it would claim frames that carry no content-type, which are JSON
+		this.converter.setStrictContentTypeMatch(true);
+		this.transcoded = Counter.builder("websocket.outbound.cbor")
+				.description("Outbound bodies re-encoded from JSON to CBOR")
+				.register(meterRegistry);
+		Gauge.builder("websocket.sessions.cbor", cborSessions, Set::size).register(meterRegistry);
+	}
+
+	MessageConverter converter() {
+		return converter;
+	}
+
+	HandshakeInterceptor binaryTransport() {
+		return new HandshakeInterceptor() {
+			@Override
+			public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+					WebSocketHandler wsHandler, Map<String, Object> attributes) {
+				attributes.put(BINARY_TRANSPORT, Boolean.TRUE);
+				return true;
+			}
+
+			@Override
+			public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+					WebSocketHandler wsHandler, Exception exception) {
+			}
+		};
+	}
+
+	@EventListener
+	public void onConnect(SessionConnectEvent event) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+		String accept = accessor.getFirstNativeHeader(ACCEPT_HEADER);
+		Map<String, Object> attributes = accessor.getSessionAttributes();
+		if (enabled && accept != null && attributes != null && attributes.containsKey(BINARY_TRANSPORT)
+				&& MimeTypeUtils.parseMimeTypes(accept).stream().anyMatch(APPLICATION_CBOR::equalsTypeAndSubtype)) {
+			cborSessions.add(accessor.getSessionId());
+		}
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		cborSessions.remove(event.getSessionId());
+	}
+
+	// SENDs labelled with payload-format:cbor are relabelled so the CBOR converter picks them up
+	ChannelInterceptor inbound() {
+		return new ChannelInterceptor() {
+			@Override
+			public Message<?> preSend(Message<?> message, MessageChannel channel) {
+				if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+						|| !CBOR.equals(SimpMessageHeaderAccessor.getFirstNativeHeader(FORMAT_HEADER,
+								message.getHeaders()))) {
+					return message;
+				}
+				MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+				accessor.setContentType(APPLICATION_CBOR);
+				return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+			}
+		};
+	}
+
+	// Bodies are converted once for all subscribers, as JSON; each CBOR session gets a token-for-token
+	// re-encoding, done on the outbound pool rather than on the thread that published the message.
+	ExecutorChannelInterceptor outbound() {
+		return new ExecutorChannelInterceptor() {
+			@Override
+			public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+				if (cborSessions.isEmpty()
+						|| SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+						|| !cborSessions.contains(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()))
+						|| !(message.getPayload() instanceof byte[] json)) {
+					return message;
+				}
+				MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+				MimeType contentType = accessor.getContentType();
+				if (contentType == null || !MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(contentType)) {
+					return message;
+				}
+				byte[] cbor;
+				try {
+					cbor = jsonToCbor(json);
+				} catch (IOException e) {
+					log.debug("Sending JSON, could not re-encode body as CBOR: {}", e.getMessage());
+					return message;
+				}
+				accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+				if (accessor instanceof NativeMessageHeaderAccessor nativeAccessor) {
+					nativeAccessor.setNativeHeader(FORMAT_HEADER, CBOR);
+				}
+				transcoded.increment();
+				return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+			}
+		};
+	}
+
+	// streams tokens from one format to the other without binding to a DTO; numbers keep their JSON
+	// width, so small ids become one to five byte CBOR integers
+	public static byte[] jsonToCbor(byte[] json) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+		try (JsonParser parser = JSON_FACTORY.createParser(json);
+				JsonGenerator generator = CBOR_FACTORY.createGenerator(out)) {
+			parser.nextToken();
+			generator.copyCurrentStructure(parser);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,98 @@
+package config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import service.ReadYourWritesGuard;
+
+// Writes and queries get separate pools so a burst of history reads cannot starve sendMessage/receipts
+// of connections: read-write transactions use the "writes" pool, @Transactional(readOnly = true) work the
+// "queries" pool, or the replicas when chat.datasource.replica-urls is set. The lazy proxy only fetches a
+// physical connection at the first statement, after the transaction has marked it read-only, which is
+// what lets it pick the pool.
+@Configuration
+public class DataSourceConfig implements DisposableBean {
+
+	@Value("${chat.datasource.replica-urls:}")
+	private List<String> replicaUrls;
+
+	@Value("${chat.datasource.max-replica-lag:5s}")
+	private Duration maxReplicaLag;
+
+	@Value("${chat.datasource.replica-lag-query:SHOW REPLICA STATUS}")
+	private String replicaLagQuery;
+
+	private final List<HikariDataSource> pools = new ArrayList<>();
+	private ReplicaDataSource replicas;
+
+	@Bean
+	public DataSource dataSource(DataSourceProperties properties, Environment environment, ReadYourWritesGuard guard,
+			MeterRegistry meterRegistry, WritePoolPressure writePoolPressure) {
+		HikariDataSource writes = pool(properties, environment, properties.determineUrl(), "writes", "writes");
+		writes.setMetricsTrackerFactory(writePoolPressure);
+		HikariDataSource queries = pool(properties, environment, properties.determineUrl(), "queries", "queries");
+		queries.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+		if (replicaUrls.isEmpty()) {
+			return routing(writes, queries);
+		}
+		List<HikariDataSource> replicaPools = new ArrayList<>();
+		for (int i = 0; i < replicaUrls.size(); i++) {
+			HikariDataSource replica = pool(properties, environment, replicaUrls.get(i), "replica-" + (i + 1), "queries");
+			replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+			replicaPools.add(replica);
+		}
+		// pinned or lag-fallback reads still stay off the write pool
+		replicas = new ReplicaDataSource(queries, replicaPools, guard);
+		return routing(writes, replicas);
+	}
+
+	static DataSource routing(DataSource primary, DataSource readOnly) {
+		LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+		proxy.setReadOnlyDataSource(readOnly);
+		return proxy;
+	}
+
+	// same driver and credentials as the primary; spring.datasource.hikari.* applies to every pool and
+	// chat.datasource.pools.<workload>.* overrides it, e.g. the pool sizes
+	private HikariDataSource pool(DataSourceProperties properties, Environment environment, String url, String name,
+			String workload) {
+		HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+		Binder binder = Binder.get(environment);
+		binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+		binder.bind("chat.datasource.pools." + workload, Bindable.ofInstance(pool));
+		pool.setPoolName(name);
+		pools.add(pool);
+		return pool;
+	}
+
+	@Scheduled(fixedDelayString = "${chat.datasource.replica-lag-probe-ms:5000}")
+	public void probeReplicaLag() {
+		if (replicas != null && !replicaLagQuery.isBlank()) {
+			replicas.probe(replicaLagQuery, maxReplicaLag);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		pools.forEach(HikariDataSource::close);
+	}
+}
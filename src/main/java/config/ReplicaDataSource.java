@@ -0,0 +1,85 @@
+package config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import service.ReadYourWritesGuard;
+
+// read-only side of the routing proxy: round-robin over healthy replicas, the primary when the
+// request is pinned by ReadYourWritesGuard or no replica is within the allowed lag
+final class ReplicaDataSource extends AbstractDataSource {
+	private static final Logger log = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+	private final DataSource primary;
+	private final List<? extends DataSource> replicas;
+	private final ReadYourWritesGuard guard;
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile boolean[] healthy;
+
+	ReplicaDataSource(DataSource primary, List<? extends DataSource> replicas, ReadYourWritesGuard guard) {
+		this.primary = primary;
+		this.replicas = replicas;
+		this.guard = guard;
+		this.healthy = new boolean[replicas.size()];
+		Arrays.fill(healthy, true);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return target().getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return target().getConnection(username, password);
+	}
+
+	private DataSource target() {
+		if (!guard.isPinned()) {
+			boolean[] current = healthy;
+			for (int i = 0; i < replicas.size(); i++) {
+				int candidate = Math.floorMod(next.getAndIncrement(), replicas.size());
+				if (current[candidate]) {
+					return replicas.get(candidate);
+				}
+			}
+		}
+		return primary;
+	}
+
+	// a replica is usable while the lag query reports it within maxLag; an empty result means it is
+	// not replicating (a standalone reader) and counts as current, errors take it out of rotation
+	void probe(String lagQuery, Duration maxLag) {
+		boolean[] result = new boolean[replicas.size()];
+		for (int i = 0; i < replicas.size(); i++) {
+			try (Connection connection = replicas.get(i).getConnection();
+					Statement statement = connection.createStatement();
+					ResultSet rs = statement.executeQuery(lagQuery)) {
+				if (!rs.next()) {
+					result[i] = true;
+				} else {
+					Object lag = rs.getObject("Seconds_Behind_Source");
+					result[i] = lag instanceof Number seconds && seconds.longValue() <= maxLag.toSeconds();
+				}
+			} catch (SQLException e) {
+				log.warn("Replica {} failed its lag probe, routing its reads to the primary", i + 1, e);
+			}
+			if (result[i] != healthy[i]) {
+				log.info("Replica {} is now {}", i + 1, result[i] ? "in rotation" : "out of rotation");
+			}
+		}
+		healthy = result;
+	}
+}
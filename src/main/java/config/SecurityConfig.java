@@ -1,5 +1,6 @@
 package config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -20,6 +21,7 @@ import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.config.Customizer;
 import entities.User.Role;
+import jakarta.servlet.DispatcherType;
 import filter.JwtAuthenticationFilter;
 
 
@@ -31,6 +33,9 @@ public class SecurityConfig {
     private final UserDetailsService userDetailsService;
     private final JwtAuthenticationFilter jwtAuthenicationFilter;
 
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
     public SecurityConfig(UserDetailsService userDetailsService,JwtAuthenticationFilter jwtAuthenicationFilter ) {
         this.userDetailsService = userDetailsService;
 		this.jwtAuthenicationFilter = jwtAuthenicationFilter;
@@ -46,14 +51,19 @@ public class SecurityConfig {
           .csrf(AbstractHttpConfigurer::disable)
           .csrf(csrf -> csrf.disable()) 
             .authorizeHttpRequests(c -> c
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll() // streamed responses finish on an async dispatch
             	.requestMatchers("/api/messages/chat/**","/getting/**","/dropdown","/details/**").authenticated()
                 .requestMatchers("/user/register").permitAll()
-                .requestMatchers("/ws/**", "/app/**", "/topic/**").permitAll()
+                .requestMatchers("/ws/**", "/stomp", "/app/**", "/topic/**").permitAll()
                 .requestMatchers("/user/**","/user").permitAll()
             	.requestMatchers("/user/**").permitAll()
                 .requestMatchers("/user/**").authenticated()  
-                .requestMatchers("/allmessages").hasRole(Role.ADMIN.name())
+                .requestMatchers("/allmessages", "/allmessages/**").hasRole(Role.ADMIN.name())
                 .requestMatchers(HttpMethod.POST, "/login").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                // scraped by Prometheus without a user token, but only on the internal management port
+                .requestMatchers(request -> request.getLocalPort() == managementPort
+                        && "/actuator/prometheus".equals(request.getRequestURI())).permitAll()
                 .anyRequest().authenticated()
                )
            .addFilterAfter(jwtAuthenicationFilter, UsernamePasswordAuthenticationFilter.class) // Changed to addFilterAfter
@@ -0,0 +1,144 @@
+package config;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import entities.User.Role;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Token bucket per user for inbound chat messages, sized by role. A bucket is a single AtomicLong holding
+// the time at which it is full again: taking a token moves that time one interval forward with a CAS,
+// and a frame is over the limit when it would land more than burst intervals ahead of now (GCRA).
+// A bucket whose time has passed is full and carries no state, so a sweep drops those.
+@Component
+public class SendRateLimiter {
+
+	public enum Decision {
+		ALLOW,
+		// drop the frame, keep the session
+		REJECT,
+		// disconnect-after frames in a row were rejected, the client is not backing off
+		DISCONNECT
+	}
+
+	// frames per second and how many may arrive at once after a quiet period
+	public record Limit(double rate, int burst) {
+	}
+
+	private record Rate(long intervalNanos, long toleranceNanos) {
+	}
+
+	private static final class Bucket {
+		final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+		final AtomicInteger rejectedInARow = new AtomicInteger();
+	}
+
+	private final boolean enabled;
+	private final int disconnectAfter;
+	private final LongSupplier clock;
+	private final Map<Role, Rate> rates = new EnumMap<>(Role.class);
+	private final Map<Role, Counter> rejected = new EnumMap<>(Role.class);
+	private final Map<Role, Counter> disconnected = new EnumMap<>(Role.class);
+	private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+	// chat.websocket.rate-limit.rate/burst apply to every role, chat.websocket.rate-limit.roles.<ROLE>.* override them
+	@Autowired
+	public SendRateLimiter(MeterRegistry meterRegistry, Environment environment,
+			@Value("${chat.websocket.rate-limit.enabled:true}") boolean enabled,
+			@Value("${chat.websocket.rate-limit.rate:10}") double rate,
+			@Value("${chat.websocket.rate-limit.burst:30}") int burst,
+			@Value("${chat.websocket.rate-limit.disconnect-after:100}") int disconnectAfter) {
+		this(meterRegistry, enabled, new Limit(rate, burst),
+				Binder.get(environment)
+						.bind("chat.websocket.rate-limit.roles", Bindable.mapOf(Role.class, Limit.class))
+						.orElse(Map.of()),
+				disconnectAfter, System::nanoTime);
+	}
+
+	public SendRateLimiter(MeterRegistry meterRegistry, boolean enabled, Limit defaults, Map<Role, Limit> roles,
+			int disconnectAfter, LongSupplier clock) {
+		this.enabled = enabled;
+		this.disconnectAfter = disconnectAfter;
+		this.clock = clock;
+		for (Role role : Role.values()) {
+			Limit limit = roles.getOrDefault(role, defaults);
+			if (limit.rate() <= 0 || limit.burst() < 1) {
+				throw new IllegalArgumentException("Rate limit for " + role + " needs a positive rate and burst");
+			}
+			long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limit.rate()));
+			rates.put(role, new Rate(interval, interval * limit.burst()));
+			rejected.put(role, throttled(meterRegistry, role, "rejected"));
+			disconnected.put(role, throttled(meterRegistry, role, "disconnected"));
+		}
+	}
+
+	private static Counter throttled(MeterRegistry meterRegistry, Role role, String action) {
+		return Counter.builder("websocket.inbound.throttled")
+				.description("SEND frames over the sender's rate limit")
+				.tag("role", role.name())
+				.tag("action", action)
+				.register(meterRegistry);
+	}
+
+	public Decision acquire(Long userId, Role role) {
+		if (!enabled) {
+			return Decision.ALLOW;
+		}
+		Rate rate = rates.get(role);
+		Bucket bucket = buckets.get(userId);
+		if (bucket == null) {
+			bucket = buckets.computeIfAbsent(userId, id -> new Bucket());
+		}
+		long now = clock.getAsLong();
+		long fullAt;
+		long next;
+		do {
+			fullAt = bucket.fullAt.get();
+			next = Math.max(fullAt, now) + rate.intervalNanos();
+			if (next - now > rate.toleranceNanos()) {
+				return reject(bucket, role);
+			}
+		} while (!bucket.fullAt.compareAndSet(fullAt, next));
+		// read first so a well-behaved sender never writes the shared line
+		if (bucket.rejectedInARow.get() != 0) {
+			bucket.rejectedInARow.set(0);
+		}
+		return Decision.ALLOW;
+	}
+
+	// A frame racing the removal lands on the dropped bucket and is not charged to the new one, which
+	// at worst grants one extra frame; not worth a lock on the hot path.
+	@Scheduled(fixedDelayString = "${chat.websocket.rate-limit.sweep-interval-ms:60000}")
+	public void sweep() {
+		long now = clock.getAsLong();
+		buckets.values().removeIf(bucket -> bucket.fullAt.get() - now <= 0 && bucket.rejectedInARow.get() == 0);
+	}
+
+	int size() {
+		return buckets.size();
+	}
+
+	private Decision reject(Bucket bucket, Role role) {
+		if (disconnectAfter > 0 && bucket.rejectedInARow.incrementAndGet() >= disconnectAfter) {
+			bucket.rejectedInARow.set(0);
+			disconnected.get(role).increment();
+			return Decision.DISCONNECT;
+		}
+		rejected.get(role).increment();
+		return Decision.REJECT;
+	}
+}
@@ -1,12 +1,27 @@
 package config;
 
+import java.security.Principal;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import service.ReadYourWritesGuard;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
+	private final ReadYourWritesGuard readYourWritesGuard;
+
+	public WebConfig(ReadYourWritesGuard readYourWritesGuard) {
+		this.readYourWritesGuard = readYourWritesGuard;
+	}
+
 @Bean
 public WebMvcConfigurer corsConfigurer() {
     return new WebMvcConfigurer() {
@@ -20,5 +35,30 @@ public WebMvcConfigurer corsConfigurer() {
         }
     };
 }
-}
 
+	// requests from users who just wrote read from the primary instead of a possibly lagging replica
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(readYourWritesInterceptor());
+	}
+
+	HandlerInterceptor readYourWritesInterceptor() {
+		return new HandlerInterceptor() {
+			@Override
+			public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+				Principal principal = request.getUserPrincipal();
+				if (principal instanceof Authentication auth && auth.getPrincipal() instanceof Long userId
+						&& readYourWritesGuard.wroteRecently(userId.intValue())) {
+					readYourWritesGuard.pin();
+				}
+				return true;
+			}
+
+			@Override
+			public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+					Exception ex) {
+				readYourWritesGuard.unpin();
+			}
+		};
+	}
+}
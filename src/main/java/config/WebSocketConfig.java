@@ -1,37 +1,259 @@
 package config;
 
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.messaging.Message;
+import dto.JwtPrincipal;
 import entities.User.Role;
 import service.JwtService;
+import service.ReadYourWritesGuard;
 
 @Configuration
 @EnableWebSocketMessageBroker
-public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer, DisposableBean {
     
+    // destinations the relay nodes use to share user sessions and unresolved user messages
+    public static final String USER_DESTINATION_BROADCAST = "/topic/unresolved-user-destination";
+    public static final String USER_REGISTRY_BROADCAST = "/topic/simp-user-registry";
+
+    // ChatController.sendMessage, the only frames the send limits apply to
+    static final String SEND_MESSAGE = "/app/sendMessage";
+    // ChatController.receipt; with sendMessage the only frames that need the write pool
+    static final String RECEIPT = "/app/receipt";
+
+    // authority granted on CONNECT -> role, for the per-role send limits
+    private static final Map<String, Role> ROLES_BY_AUTHORITY = Arrays.stream(Role.values())
+        .collect(Collectors.toUnmodifiableMap(role -> "ROLE_" + role, role -> role));
+
     @Autowired
     private JwtService jwtService;
+
+    @Autowired
+    private ReadYourWritesGuard readYourWritesGuard;
+
+    @Autowired
+    private WritePoolPressure writePoolPressure;
+
+    @Autowired
+    private CompactPayloads compactPayloads;
+
+    @Autowired
+    private SendRateLimiter sendRateLimiter;
+
+    // built by the broker configuration this class feeds, so it is only looked up on first use
+    @Autowired
+    private ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    // simple: in-memory broker, single node; relay: external STOMP broker shared by all nodes
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+    @Value("${chat.broker.relay.host:localhost}")
+    private String relayHost;
+    @Value("${chat.broker.relay.port:61613}")
+    private int relayPort;
+    @Value("${chat.broker.relay.login:guest}")
+    private String relayLogin;
+    @Value("${chat.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.websocket.inbound.mode:pool}")
+    private String inboundMode;
+    @Value("${chat.websocket.inbound.pool-size:16}")
+    private int inboundPoolSize;
+    @Value("${chat.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+    @Value("${chat.websocket.outbound.mode:pool}")
+    private String outboundMode;
+    @Value("${chat.websocket.outbound.pool-size:16}")
+    private int outboundPoolSize;
+    @Value("${chat.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+    @Value("${chat.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+    @Value("${chat.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+    @Value("${chat.websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    private final List<Runnable> shutdownHooks = new ArrayList<>();
     
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic","/queue"); // For broadcasting messages recieving msg 
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            config.enableStompBrokerRelay("/topic","/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayLogin)
+                .setClientPasscode(relayPasscode)
+                .setSystemLogin(relayLogin)
+                .setSystemPasscode(relayPasscode)
+                // lets convertAndSendToUser reach sessions connected to other nodes
+                .setUserDestinationBroadcast(USER_DESTINATION_BROADCAST)
+                .setUserRegistryBroadcast(USER_REGISTRY_BROADCAST);
+        } else {
+            config.enableSimpleBroker("/topic","/queue"); // For broadcasting messages recieving msg 
+        }
         config.setApplicationDestinationPrefixes("/app"); // For sending messages from client
         config.setUserDestinationPrefix("/user");
+        // the outbound channel runs on an executor in both modes; without this two frames for one session
+        // can be written in either order, e.g. a message overtaken by its own receipt
+        config.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // a slow client is dropped once it buffers this much or blocks a send for this long
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+            .setSendTimeLimit(sendTimeLimitMs)
+            .setMessageSizeLimit(messageSizeLimit);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutor("outbound", outboundMode, outboundPoolSize, outboundQueueCapacity))
+            .interceptors(compactPayloads.outbound());
+    }
+
+    // JSON stays first; the CBOR converter only answers to application/cbor
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(compactPayloads.converter());
+        return true;
+    }
+
+    // pool: bounded ThreadPoolTaskExecutor; virtual: one virtual thread per frame, so blocking
+    // JDBC in sendMessage no longer parks a platform thread. Either way a full channel rejects the frame
+    private Executor channelExecutor(String name, String mode, int poolSize, int queueCapacity) {
+        if ("virtual".equalsIgnoreCase(mode)) {
+            ExecutorService virtual = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("ws-" + name + "-", 0).factory());
+            // same bound as the pool (threads + queue), so a stalled database cannot pile up frames without limit
+            int maxInFlight = poolSize + queueCapacity;
+            Semaphore inFlight = new Semaphore(maxInFlight);
+            Gauge.builder("websocket.channel.active", inFlight, permits -> maxInFlight - permits.availablePermits())
+                .tag("channel", name)
+                .register(meterRegistry);
+            shutdownHooks.add(virtual::close);
+            return task -> {
+                if (!inFlight.tryAcquire()) {
+                    throw new TaskRejectedException("ws-" + name + " has " + maxInFlight + " frames in flight");
+                }
+                try {
+                    virtual.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            };
+        }
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setThreadNamePrefix("ws-" + name + "-");
+        pool.setCorePoolSize(poolSize);
+        pool.setMaxPoolSize(poolSize);
+        pool.setQueueCapacity(queueCapacity);
+        pool.setAllowCoreThreadTimeOut(true);
+        pool.initialize();
+        Gauge.builder("websocket.channel.active", pool, ThreadPoolTaskExecutor::getActiveCount)
+            .tag("channel", name)
+            .register(meterRegistry);
+        Gauge.builder("websocket.channel.queued", pool, p -> p.getThreadPoolExecutor().getQueue().size())
+            .tag("channel", name)
+            .register(meterRegistry);
+        shutdownHooks.add(pool::shutdown);
+        return pool;
+    }
+
+    // STOMP session counts per transport, read from the stats Spring already keeps for the endpoint
+    @Bean
+    public MeterBinder webSocketSessionMetrics(WebSocketMessageBrokerStats stats) {
+        return registry -> {
+            sessionGauge(registry, stats, "websocket", SubProtocolWebSocketHandler.Stats::getWebSocketSessions);
+            sessionGauge(registry, stats, "http_streaming", SubProtocolWebSocketHandler.Stats::getHttpStreamingSessions);
+            sessionGauge(registry, stats, "http_polling", SubProtocolWebSocketHandler.Stats::getHttpPollingSessions);
+            sessionsClosed(registry, stats, "limit_exceeded", SubProtocolWebSocketHandler.Stats::getLimitExceededSessions);
+            sessionsClosed(registry, stats, "no_messages_received", SubProtocolWebSocketHandler.Stats::getNoMessagesReceivedSessions);
+            sessionsClosed(registry, stats, "transport_error", SubProtocolWebSocketHandler.Stats::getTransportErrorSessions);
+            FunctionCounter.builder("stomp.frames.connect", stats, s -> s.getStompSubProtocolStats().getTotalConnect())
+                .register(registry);
+            FunctionCounter.builder("stomp.frames.disconnect", stats, s -> s.getStompSubProtocolStats().getTotalDisconnect())
+                .register(registry);
+        };
+    }
+
+    private static void sessionGauge(MeterRegistry registry, WebSocketMessageBrokerStats stats, String transport,
+            ToIntFunction<SubProtocolWebSocketHandler.Stats> count) {
+        Gauge.builder("websocket.sessions", stats, s -> count.applyAsInt(s.getWebSocketSessionStats()))
+            .tag("transport", transport)
+            .register(registry);
+    }
+
+    private static void sessionsClosed(MeterRegistry registry, WebSocketMessageBrokerStats stats, String reason,
+            ToIntFunction<SubProtocolWebSocketHandler.Stats> count) {
+        FunctionCounter.builder("websocket.sessions.closed", stats, s -> count.applyAsInt(s.getWebSocketSessionStats()))
+            .tag("reason", reason)
+            .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        shutdownHooks.forEach(Runnable::run);
     }
 
     @Override
@@ -39,10 +261,15 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
             .setAllowedOrigins("http://localhost:3000") // Specific origin
             .withSockJS();
+        // plain WebSocket for native clients; the only endpoint that can carry CBOR bodies
+        registry.addEndpoint("/stomp")
+            .setAllowedOrigins("http://localhost:3000")
+            .addInterceptors(compactPayloads.binaryTransport());
     }
     
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutor("inbound", inboundMode, inboundPoolSize, inboundQueueCapacity));
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -54,9 +281,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     if (authToken != null && authToken.startsWith("Bearer ")) {
                         String token = authToken.replace("Bearer ", "");
                         
-                        if (jwtService.validateToken(token)) {
-                            Long userId = jwtService.getIdFromToken(token);
-                            Role role = jwtService.getRoleFromToken(token);
+                        JwtPrincipal principal = jwtService.parse(token);
+                        if (principal != null) {
+                            Long userId = principal.getId();
+                            Role role = principal.getRole();
                             
                             // Set user in session
                             accessor.setUser(new UsernamePasswordAuthenticationToken(
@@ -69,9 +297,141 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     } else {
                         throw new IllegalArgumentException("Missing Authorization header");
                     }
+                } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+                    authorizeSubscription(accessor);
+                } else if (StompCommand.SEND.equals(accessor.getCommand())) {
+                    authorizeSend(accessor);
                 }
                 return message;
             }
-        });
+        }, compactPayloads.inbound(), rateLimitInterceptor(), sheddingInterceptor(), readYourWritesInterceptor(readYourWritesGuard));
+    }
+
+    // per-user token bucket on chat messages, on the transport thread: an over-limit frame is dropped and the
+    // sender told on /user/queue/errors; a client that keeps sending anyway gets an ERROR frame, which ends
+    // its session. Receipts and sync requests are not counted, a client catching up sends bursts of them
+    private ChannelInterceptor rateLimitInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                if (!rateLimited(message)
+                        || !(SimpMessageHeaderAccessor.getUser(message.getHeaders()) instanceof Authentication auth)
+                        || !(auth.getPrincipal() instanceof Long userId)) {
+                    return message;
+                }
+                switch (sendRateLimiter.acquire(userId, role(auth))) {
+                    case REJECT -> {
+                        return refuse(message, "Too many messages, slow down; message not accepted");
+                    }
+                    case DISCONNECT -> throw new MessageDeliveryException(message,
+                        "Too many messages, closing the session");
+                    default -> {
+                        return message;
+                    }
+                }
+            }
+        };
+    }
+
+    static boolean rateLimited(Message<?> message) {
+        return SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE
+                && SEND_MESSAGE.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+    }
+
+    static boolean writes(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE
+                && (SEND_MESSAGE.equals(destination) || RECEIPT.equals(destination));
+    }
+
+    private static Role role(Authentication auth) {
+        for (GrantedAuthority authority : auth.getAuthorities()) {
+            Role role = ROLES_BY_AUTHORITY.get(authority.getAuthority());
+            if (role != null) {
+                return role;
+            }
+        }
+        return Role.USER;
+    }
+
+    // runs on the transport thread before the frame is queued: while callers are already waiting on the
+    // write pool, a message or receipt is refused instead of joining an ever longer inbound queue. Sync
+    // reads from the queries pool or a replica and is what a client needs to recover, so it always passes
+    ChannelInterceptor sheddingInterceptor() {
+        Counter shed = Counter.builder("websocket.inbound.shed")
+            .description("Message and receipt frames refused because the write pool was saturated")
+            .register(meterRegistry);
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                if (writes(message) && writePoolPressure.saturated()) {
+                    shed.increment();
+                    return refuse(message, "Server busy, message not accepted, retry shortly");
+                }
+                return message;
+            }
+        };
+    }
+
+    // Drops the frame and tells only the sending session, on the destination @MessageExceptionHandler
+    // replies go to. An ERROR frame would do too, but Spring closes the session after sending one, and
+    // a busy server does not want every refused client reconnecting.
+    private Message<?> refuse(Message<?> message, String reason) {
+        if (SimpMessageHeaderAccessor.getUser(message.getHeaders()) instanceof Principal user) {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            headers.setLeaveMutable(true);
+            messagingTemplate.getObject().convertAndSendToUser(user.getName(), "/queue/errors", reason,
+                headers.getMessageHeaders());
+        }
+        return null;
+    }
+
+    // runs on the handling thread: frames from users who just wrote read from the primary
+    static ExecutorChannelInterceptor readYourWritesInterceptor(ReadYourWritesGuard readYourWritesGuard) {
+        return new ExecutorChannelInterceptor() {
+            @Override
+            public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+                if (SimpMessageHeaderAccessor.getUser(message.getHeaders()) instanceof Authentication auth
+                        && auth.getPrincipal() instanceof Long userId
+                        && readYourWritesGuard.wroteRecently(userId.intValue())) {
+                    readYourWritesGuard.pin();
+                }
+                return message;
+            }
+
+            @Override
+            public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                    Exception ex) {
+                readYourWritesGuard.unpin();
+            }
+        };
+    }
+
+    // clients only send to @MessageMapping handlers; a SEND straight to /topic or /queue would reach
+    // the broker and every subscriber of that destination
+    static void authorizeSend(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith("/app/")) {
+            throw new AccessDeniedException("Not allowed to send to " + destination);
+        }
+    }
+
+    // clients only get their own user queues, presence and conversations they take part in
+    static void authorizeSubscription(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null) {
+            throw new AccessDeniedException("Missing destination");
+        }
+        if (destination.startsWith("/user/") || destination.equals(ChatDestinations.PRESENCE)) {
+            return;
+        }
+        if (destination.startsWith(ChatDestinations.CONVERSATION_PREFIX)
+                && accessor.getUser() instanceof Authentication auth
+                && auth.getPrincipal() instanceof Long userId
+                && ChatDestinations.isParticipant(destination, userId)) {
+            return;
+        }
+        throw new AccessDeniedException("Not allowed to subscribe to " + destination);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package config;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Metrics tracker for the write pool: publishes the usual hikaricp.* meters and keeps a smoothed
+// connection wait, so inbound messages and receipts can be refused while callers are already queueing for it.
+@Component
+class WritePoolPressure implements MetricsTrackerFactory {
+	private static final double WEIGHT = 0.2;
+
+	private final MetricsTrackerFactory micrometer;
+	private final boolean enabled;
+	private final long maxWaitNanos;
+	private final AtomicLong smoothedWaitNanos = new AtomicLong();
+	private volatile PoolStats stats;
+
+	WritePoolPressure(MeterRegistry meterRegistry,
+			@Value("${chat.datasource.shed.enabled:true}") boolean enabled,
+			@Value("${chat.datasource.shed.max-acquire-wait:250ms}") Duration maxAcquireWait) {
+		this.micrometer = new MicrometerMetricsTrackerFactory(meterRegistry);
+		this.enabled = enabled;
+		this.maxWaitNanos = maxAcquireWait.toNanos();
+	}
+
+	@Override
+	public IMetricsTracker create(String poolName, PoolStats poolStats) {
+		this.stats = poolStats;
+		IMetricsTracker delegate = micrometer.create(poolName, poolStats);
+		return new IMetricsTracker() {
+			@Override
+			public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+				delegate.recordConnectionCreatedMillis(connectionCreatedMillis);
+			}
+
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				delegate.recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+				smoothedWaitNanos.updateAndGet(current -> current + (long) ((elapsedAcquiredNanos - current) * WEIGHT));
+			}
+
+			@Override
+			public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+				delegate.recordConnectionUsageMillis(elapsedBorrowedMillis);
+			}
+
+			// a caller gave up waiting, which is past any sensible threshold on its own
+			@Override
+			public void recordConnectionTimeout() {
+				delegate.recordConnectionTimeout();
+				smoothedWaitNanos.accumulateAndGet(2 * maxWaitNanos, Math::max);
+			}
+
+			@Override
+			public void close() {
+				delegate.close();
+			}
+		};
+	}
+
+	// waits only matter while someone is still waiting; once the queue drains, sends are accepted again
+	boolean saturated() {
+		PoolStats current = stats;
+		return enabled && current != null && current.getPendingThreads() > 0
+				&& smoothedWaitNanos.get() > maxWaitNanos;
+	}
+}
@@ -2,29 +2,71 @@ package controller;
 
 import java.util.List;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import entities.Message;
+import dto.AdminMessageDTO;
+import dto.MessageFilter;
+import service.MessageExportService;
+import service.MessageSearchIndex;
 import service.MessageService;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:3000",allowedHeaders = "*")
 public class AdminController {
 	
-    public AdminController(MessageService messageService) {
+    public AdminController(MessageService messageService, MessageExportService messageExportService,
+    		MessageSearchIndex messageSearchIndex) {
 		this.messageService = messageService;
+		this.messageExportService = messageExportService;
+		this.messageSearchIndex = messageSearchIndex;
 	}
 	private final MessageService messageService;    
+	private final MessageExportService messageExportService;
+	private final MessageSearchIndex messageSearchIndex;
+
+     // newest first; pass the last id of a page as beforeId to get the next one
      @GetMapping("/allmessages")
-     public ResponseEntity<List<Message>> getAllMessages (Authentication auth){
-       List<Message>messages = messageService.getAllMessages();
+     public ResponseEntity<List<AdminMessageDTO>> getAllMessages (MessageFilter filter,
+    		 @RequestParam(required = false) Integer beforeId,
+    		 @RequestParam(required = false) Integer size,
+    		 Authentication auth){
+       List<AdminMessageDTO> messages = messageService.getAllMessages(filter, beforeId, size);
        return ResponseEntity.ok(messages);
      }
-    
-    
+
+     // rows come tier by tier (archive, then hot) in id order within each, see MessageExportService
+     @GetMapping("/allmessages/export")
+     public ResponseEntity<StreamingResponseBody> exportMessages(MessageFilter filter,
+    		 @RequestParam(defaultValue = "ndjson") String format,
+    		 Authentication auth) {
+    	 MessageExportService.Format exportFormat;
+    	 try {
+    		 exportFormat = MessageExportService.Format.valueOf(format.toUpperCase());
+    	 } catch (IllegalArgumentException e) {
+    		 return ResponseEntity.badRequest().build();
+    	 }
+    	 MediaType contentType = exportFormat == MessageExportService.Format.CSV
+    			 ? MediaType.parseMediaType("text/csv")
+    			 : MediaType.parseMediaType("application/x-ndjson");
+    	 StreamingResponseBody body = out -> messageExportService.export(filter, exportFormat, out);
+    	 return ResponseEntity.ok()
+    			 .contentType(contentType)
+    			 .header("Content-Disposition", "attachment; filename=messages." + exportFormat.name().toLowerCase())
+    			 .body(body);
+     }
+
+     // repopulates the search index from the messages table, returns the number of indexed messages
+     @PostMapping("/allmessages/search-index/rebuild")
+     public ResponseEntity<Integer> rebuildSearchIndex(Authentication auth) {
+    	 return ResponseEntity.ok(messageSearchIndex.rebuild());
+     }
     
 }
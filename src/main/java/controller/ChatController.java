@@ -1,42 +1,101 @@
 package controller;
+import java.security.Principal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.ResponseEntity.BodyBuilder;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.RestController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import config.ChatDestinations;
 import dto.MessageDTO;
+import dto.MessageSearchResultDTO;
+import dto.ReceiptDTO;
+import dto.SyncBatchDTO;
+import dto.SyncRequestDTO;
+import dto.UnreadCountDTO;
 import dto.UserDetail;
 import entities.Message;
 import entities.Message.Status;
 import entities.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import repository.MessageRepository;
+import service.MessagePersistencePipeline;
+import service.MessageSearchIndex;
 import service.MessageService;
+import service.ReceiptService;
 import service.UserService;
 @Controller
 @CrossOrigin(origins = "http://localhost:3000")
 @RestController
 public class ChatController {
-	public ChatController(MessageRepository messageRepository, MessageService messageService, UserService userService) {
+	private static final Logger log = LoggerFactory.getLogger(ChatController.class);
+
+	public ChatController(MessageRepository messageRepository, MessageService messageService, UserService userService,
+			MessagePersistencePipeline persistencePipeline, ReceiptService receiptService,
+			MessageSearchIndex messageSearchIndex, MeterRegistry meterRegistry) {
 		this.messageService = messageService;
 		this.userService =userService ;
+		this.persistencePipeline = persistencePipeline;
+		this.receiptService = receiptService;
+		this.messageSearchIndex = messageSearchIndex;
+		this.meterRegistry = meterRegistry;
+		// stages of sendMessage, their sum is roughly chat.send; histograms are enabled in application.yaml
+		this.validateTimer = stageTimer("validate");
+		this.loadUsersTimer = stageTimer("load_users");
+		this.persistTimer = stageTimer("persist");
+		this.fanOutTimer = stageTimer("fan_out");
+		this.sendSucceeded = Timer.builder("chat.send").tag("outcome", "success").register(meterRegistry);
+		this.sendFailed = Timer.builder("chat.send").tag("outcome", "failure").register(meterRegistry);
+		this.messagesSent = Counter.builder("chat.messages.sent")
+				.description("Messages accepted and fanned out")
+				.register(meterRegistry);
 	}
 	@Autowired
 	private SimpMessagingTemplate messagingTemplate;
 	private final MessageService messageService; 
 	private final UserService userService; 
+	private final MessagePersistencePipeline persistencePipeline;
+	private final ReceiptService receiptService;
+	private final MessageSearchIndex messageSearchIndex;
+	private final MeterRegistry meterRegistry;
+	private final Timer validateTimer;
+	private final Timer loadUsersTimer;
+	private final Timer persistTimer;
+	private final Timer fanOutTimer;
+	private final Timer sendSucceeded;
+	private final Timer sendFailed;
+	private final Counter messagesSent;
+
+	@Value("${chat.sync.batch-size:200}")
+	private int syncBatchSize;
+	@Value("${chat.sync.max-batches:25}")
+	private int syncMaxBatches;
 	
 	@MessageMapping("/sendMessage")
 	public void sendMessage(MessageDTO dto) {
+	    Timer.Sample total = Timer.start(meterRegistry);
+	    Timer.Sample stage = Timer.start(meterRegistry);
 	    try {
 	        // Validate
 	        if (dto.getSenderId() == null || dto.getReceiverId() == null) {
@@ -45,63 +104,84 @@ public class ChatController {
 	        if (dto.getMessageText() == null || dto.getMessageText().trim().isEmpty()) {
 	            throw new IllegalArgumentException("Message text cannot be empty");
 	        }
+	        stage = lap(stage, validateTimer);
+
+	        if (!userService.exists(dto.getSenderId()) || !userService.exists(dto.getReceiverId())) {
+	            throw new IllegalArgumentException("Unknown sender or receiver");
+	        }
 
-	        // Map DTO → Entity
-	        User sender = userService.findById(dto.getSenderId());
-	        User receiver = userService.findById(dto.getReceiverId());
+	        // Map DTO → Entity, references only carry the id so no user rows are loaded
+	        User sender = userService.getReference(dto.getSenderId());
+	        User receiver = userService.getReference(dto.getReceiverId());
+	        stage = lap(stage, loadUsersTimer);
 
 	        Message message = new Message();
 	        message.setSender(sender);
 	        message.setReceiver(receiver);
 	        message.setMessageText(dto.getMessageText());
-	        message.setSentAt(LocalDateTime.now());
+	        // whole seconds, as the column stores them: clients echo sentAt back in receipts and history cursors
+	        message.setSentAt(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
 	        message.setStatus(Status.SENT);
 
-	        // Save
-	        Message saved = messageService.saveMessage(message);
+	        // Save (or queue for the batch writer, depending on chat.persistence.mode)
+	        Message saved = persistencePipeline.submit(message);
+	        stage = lap(stage, persistTimer);
 
-	        if (dto.getStatus() != null) {
-	            message.setStatus(Status.valueOf(dto.getStatus().toUpperCase()));
-	        } else {
-	            message.setStatus(Status.SENT); // default if no status is provided
-	        }
 	        // Build DTO response
-	        MessageDTO response = new MessageDTO(
-	                saved.getId(),
-	                saved.getMessageText(),
-	                saved.getSentAt(),
-	                saved.getStatus().name(),
-	                saved.getSender().getId(),
-	                saved.getReceiver().getId()
-	        );
+	        MessageDTO response = MessageDTO.from(saved);
 
 	        //  Send to specific receiver
 	        messagingTemplate.convertAndSendToUser(
 	                dto.getReceiverId().toString(),
-	                "/queue/messages",
+	                ChatDestinations.USER_MESSAGES,
 	                response
 	        );
 
-	        // 🔹 Also broadcast (optional)
-	        messagingTemplate.convertAndSend("/topic/message", response);
+	        // Open chat windows of both participants; only sessions of this pair can subscribe
+	        messagingTemplate.convertAndSend(
+	                ChatDestinations.conversationTopic(saved.getSenderId(), saved.getReceiverId()),
+	                response
+	        );
+	        stage.stop(fanOutTimer);
+	        messagesSent.increment();
+	        total.stop(sendSucceeded);
 
 	    } catch (Exception e) {
-	        System.err.println("Error processing message: " + e.getMessage());
+	        total.stop(sendFailed);
+	        log.debug("Error processing message: {}", e.getMessage());
 	        throw e;
 	    }
 	}
+
+	private Timer stageTimer(String stage) {
+	    return Timer.builder("chat.send.stage").tag("stage", stage).register(meterRegistry);
+	}
+
+	private Timer.Sample lap(Timer.Sample sample, Timer timer) {
+	    sample.stop(timer);
+	    return Timer.start(meterRegistry);
+	}
+
+	// rejected frames (validation, full write-behind queue) are reported back to the sender only
+	@MessageExceptionHandler
+	@SendToUser(destinations = "/queue/errors", broadcast = false)
+	public String handleSendError(Exception e) {
+	    return e.getMessage();
+	}
     
-    // REST endpoint to get chat history
+    // REST endpoint to get chat history, newest page first; pass the oldest
+    // message's sentAt/id as before/beforeId to page further back
     @GetMapping("/api/messages/chat/{userId1}/{userId2}")
-    public ResponseEntity<List<Message>> getChatHistory(
+    public ResponseEntity<List<MessageDTO>> getChatHistory(
         @PathVariable Integer userId1,  
         @PathVariable Integer userId2,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+        @RequestParam(required = false) Integer beforeId,
+        @RequestParam(required = false) Integer size,
         Authentication authentication
          ) { 
-    	System.out.println("Authentication object: " + authentication);
-        List<Message> messages = messageService.getChatHistory(userId1, userId2);
-        System.out.println("Fetching chat between " + userId1 + " and " + userId2);
-        System.out.println("Messages found: " + messages.size()); 
+        List<MessageDTO> messages = messageService.getChatHistory(userId1, userId2, before, beforeId, size);
+        log.debug("Chat between {} and {}: {} messages", userId1, userId2, messages.size());
         return ResponseEntity.ok(messages);
     }
 
@@ -130,10 +210,68 @@ public class ChatController {
                 .body("Error fetching user details: " + e.getMessage());
         }
     }
-    //@PutMapping("/{id}/seen")
-    public ResponseEntity<String> markAsSeen(@PathVariable Integer id) {
-        messageService.markMessageAsSeen(id);
-        return ResponseEntity.ok("Message as seen");
+    // client acknowledges everything from senderId up to a message id, applied in batches
+    @MessageMapping("/receipt")
+    public void receipt(ReceiptDTO receipt, Principal principal) {
+        receipt.setReaderId(currentUserId(principal).intValue());
+        receiptService.submit(receipt);
+    }
+
+    // reconnect: replay what this session missed since its sync cursor, in commit-ordered batches, to this session only
+    @MessageMapping("/sync")
+    public void sync(SyncRequestDTO request, Principal principal, SimpMessageHeaderAccessor accessor) {
+        Integer userId = currentUserId(principal).intValue();
+        Long cursor = request.getCursor();
+        for (int i = 0; i < syncMaxBatches; i++) {
+            SyncBatchDTO batch = messageService.getMissedMessages(userId, cursor, syncBatchSize);
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(accessor.getSessionId());
+            headers.setLeaveMutable(true);
+            messagingTemplate.convertAndSendToUser(principal.getName(), ChatDestinations.USER_SYNC, batch,
+                    headers.getMessageHeaders());
+            // past max-batches the client sees hasMore and asks again from the returned cursor
+            if (!batch.isHasMore()) {
+                break;
+            }
+            cursor = batch.getCursor();
+        }
+    }
+
+    // same as /app/sync, one batch per call
+    @GetMapping("/api/messages/sync")
+    public ResponseEntity<SyncBatchDTO> syncBatch(@RequestParam(required = false) Long after, Authentication auth) {
+        return ResponseEntity.ok(messageService.getMissedMessages(currentUserId(auth).intValue(), after, syncBatchSize));
+    }
+
+    @GetMapping("/api/messages/unread")
+    public ResponseEntity<UnreadCountDTO> getUnreadTotal(Authentication auth) {
+        return ResponseEntity.ok(new UnreadCountDTO(null, messageService.getUnreadTotal(currentUserId(auth).intValue())));
+    }
+
+    @GetMapping("/api/messages/unread/{partnerId}")
+    public ResponseEntity<UnreadCountDTO> getUnreadCount(@PathVariable Integer partnerId, Authentication auth) {
+        return ResponseEntity.ok(new UnreadCountDTO(partnerId,
+                messageService.getUnreadCount(currentUserId(auth).intValue(), partnerId)));
+    }
+
+    // full-text search over the caller's own conversations; "with" narrows it to one partner
+    @GetMapping("/api/messages/search")
+    public ResponseEntity<MessageSearchResultDTO> searchMessages(@RequestParam String q,
+            @RequestParam(required = false) Integer with,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size,
+            Authentication auth) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(messageSearchIndex.search(currentUserId(auth).intValue(), q, with, page, size));
+    }
+
+    private static Long currentUserId(Principal principal) {
+        if (principal instanceof Authentication auth && auth.getPrincipal() instanceof Long userId) {
+            return userId;
+        }
+        throw new IllegalArgumentException("Authenticated session required");
     }
     
     
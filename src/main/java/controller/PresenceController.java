@@ -0,0 +1,34 @@
+package controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import dto.PresenceDTO;
+import service.PresenceService;
+
+@RestController
+@CrossOrigin(origins = "http://localhost:3000",allowedHeaders = "*")
+public class PresenceController {
+
+	private final PresenceService presenceService;
+
+	public PresenceController(PresenceService presenceService) {
+		this.presenceService = presenceService;
+	}
+
+	// snapshot to start from, live changes follow on /topic/presence
+	@GetMapping("/presence")
+	public ResponseEntity<List<PresenceDTO>> getOnlineUsers() {
+		return ResponseEntity.ok(presenceService.getOnlineUsers());
+	}
+
+	@GetMapping("/presence/{userId}")
+	public ResponseEntity<PresenceDTO> getPresence(@PathVariable Long userId) {
+		return ResponseEntity.ok(presenceService.status(userId));
+	}
+}
@@ -3,6 +3,9 @@ package controller;
 import java.util.List;
 import entities.User.Role;
 import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -17,17 +20,20 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import dto.ConversationDTO;
 import dto.LoginResponse;
 import dto.LoginUser;
+import dto.UserDetail;
 import entities.User;
 import repository.UserRepository;
 import service.JwtService;
 import service.MessageService;
-import entities.Message;
 import service.UserService;
 @CrossOrigin(origins = "http://localhost:3000",allowedHeaders = "*")
 @RestController
 public class UserController {
+	private static final Logger log = LoggerFactory.getLogger(UserController.class);
 
 	private final UserRepository userRepository;
 	private final AuthenticationManager authenticationManager;
@@ -49,24 +55,35 @@ public class UserController {
 	        if (user.getRole() == null) {
 	            user.setRole(User.Role.USER);
 	        }
-	        User savedUser = userRepository.save(user);
+	        User savedUser = userService.register(user);
 	        return ResponseEntity.ok("User registered successfully with ID: " + savedUser.getId());
 	    } catch (Exception e) {
-	        e.printStackTrace();
+	        log.error("Registration failed", e);
 	        return ResponseEntity.status(500).body("Error: " + e.getMessage());
 	    }
 	}
 	
-	// search by email
+	// user directory; q is a name/email prefix, after is the last id of the previous page
 	@GetMapping("/dropdown")
-	public ResponseEntity<List<User>> getAllUser( Authentication auth) {
-	   List <User> userrole= userService.getByRole(Role.USER);
-		
-	    if (!userrole.isEmpty()) {
-	    	return ResponseEntity.ok(userrole);
-	    }
-	    System.out.println("User not found");
-	    return ResponseEntity.notFound().build();
+	public ResponseEntity<List<UserDetail>> getAllUser(@RequestParam(required = false) String q,
+			@RequestParam(required = false) Integer after,
+			@RequestParam(required = false) Integer size,
+			WebRequest request, Authentication auth) {
+		String etag = userService.getDirectoryEtag(q, after, size);
+		// answers 304 itself when If-None-Match still matches
+		if (request.checkNotModified(etag)) {
+			return null;
+		}
+		List<UserDetail> users = userService.getDirectory(q, after, size);
+		boolean paged = q != null || after != null || size != null;
+		if (users.isEmpty() && !paged) {
+			log.debug("User directory is empty");
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok()
+				.cacheControl(CacheControl.noCache().cachePrivate())
+				.eTag(etag)
+				.body(users);
 	}
 	
 	//post for login
@@ -92,7 +109,7 @@ public class UserController {
 	            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Password is incorrect");
 	        }
 	        String token = jwtService.generateToken(user);
-	        System.out.println("Generated JWT Token: " + token);
+	        log.debug("Issued token for user {}", user.getId());
 	        return ResponseEntity.ok(new LoginResponse(token, user));
 
 	    } catch (Exception e) {
@@ -102,8 +119,7 @@ public class UserController {
 
 
 	@GetMapping("/getting/{userId}")
-    public List<Message> getLatestChats(@PathVariable Integer userId, Authentication auth ) {
-		System.out.println("Authenication for getting "+ auth);
+    public List<ConversationDTO> getLatestChats(@PathVariable Integer userId, Authentication auth ) {
         return messageService.getLatestChats(userId);
     }
 	
@@ -0,0 +1,38 @@
+package dto;
+
+import java.time.LocalDateTime;
+
+import entities.Message;
+
+// admin view of a message: keeps the nested sender/receiver shape the admin panel reads, without the User entity
+public class AdminMessageDTO extends MessageDTO {
+    private UserDetail sender;
+    private UserDetail receiver;
+
+    public AdminMessageDTO() {
+    }
+
+    public AdminMessageDTO(Integer id, String messageText, LocalDateTime sentAt, Message.Status status,
+                           Integer senderId, String senderName, String senderEmail,
+                           Integer receiverId, String receiverName, String receiverEmail) {
+        super(id, messageText, sentAt, status, senderId, receiverId);
+        this.sender = new UserDetail(senderId, senderName, senderEmail);
+        this.receiver = new UserDetail(receiverId, receiverName, receiverEmail);
+    }
+
+    public UserDetail getSender() {
+        return sender;
+    }
+
+    public void setSender(UserDetail sender) {
+        this.sender = sender;
+    }
+
+    public UserDetail getReceiver() {
+        return receiver;
+    }
+
+    public void setReceiver(UserDetail receiver) {
+        this.receiver = receiver;
+    }
+}
@@ -0,0 +1,89 @@
+package dto;
+
+import java.time.LocalDateTime;
+
+import entities.Conversation;
+
+// inbox row; keeps the message field names the chat list already reads
+public class ConversationDTO {
+    private Integer id;
+    private Integer partnerId;
+    private String messageText;
+    private LocalDateTime sentAt;
+    private Integer senderId;
+    private Integer receiverId;
+    private int unreadCount;
+
+    public ConversationDTO() {
+    }
+
+    public static ConversationDTO from(Conversation conversation, Integer userId) {
+        ConversationDTO dto = new ConversationDTO();
+        Integer partnerId = conversation.getPartnerId(userId);
+        Integer senderId = conversation.getLastSenderId();
+        dto.id = conversation.getLastMessageId();
+        dto.partnerId = partnerId;
+        dto.messageText = conversation.getLastMessagePreview();
+        dto.sentAt = conversation.getLastMessageAt();
+        dto.senderId = senderId;
+        dto.receiverId = senderId.equals(userId) ? partnerId : userId;
+        dto.unreadCount = conversation.getUnreadFor(userId);
+        return dto;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getPartnerId() {
+        return partnerId;
+    }
+
+    public void setPartnerId(Integer partnerId) {
+        this.partnerId = partnerId;
+    }
+
+    public String getMessageText() {
+        return messageText;
+    }
+
+    public void setMessageText(String messageText) {
+        this.messageText = messageText;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public Integer getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(Integer senderId) {
+        this.senderId = senderId;
+    }
+
+    public Integer getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(Integer receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
@@ -0,0 +1,34 @@
+package dto;
+
+import java.time.Instant;
+
+import entities.User.Role;
+
+// everything the filters need from a verified token, produced by a single parse
+public final class JwtPrincipal {
+	private final Long id;
+	private final Role role;
+	private final Instant expiresAt;
+
+	public JwtPrincipal(Long id, Role role, Instant expiresAt) {
+		this.id = id;
+		this.role = role;
+		this.expiresAt = expiresAt;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public Role getRole() {
+		return role;
+	}
+
+	public Instant getExpiresAt() {
+		return expiresAt;
+	}
+
+	public boolean isExpired() {
+		return !expiresAt.isAfter(Instant.now());
+	}
+}
@@ -2,6 +2,8 @@ package dto;
 
 import java.time.LocalDateTime;
 
+import entities.Message;
+
 public class MessageDTO {
     private Integer id;
     private String messageText;
@@ -24,6 +26,22 @@ public class MessageDTO {
         this.receiverId = receiverId;
     }
 
+    // JPQL constructor expression target, see MessageRepository
+    public MessageDTO(Integer id, String messageText, LocalDateTime sentAt, Message.Status status, Integer senderId, Integer receiverId) {
+        this(id, messageText, sentAt, status.name(), senderId, receiverId);
+    }
+
+    public static MessageDTO from(Message message) {
+        return new MessageDTO(
+                message.getId(),
+                message.getMessageText(),
+                message.getSentAt(),
+                message.getStatus().name(),
+                message.getSenderId(),
+                message.getReceiverId()
+        );
+    }
+
     // Getters and setters
     public Integer getId() {
         return id;
@@ -0,0 +1,52 @@
+package dto;
+
+import java.time.LocalDateTime;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import entities.Message.Status;
+
+// query parameters shared by the admin browse and export endpoints
+public class MessageFilter {
+	private Integer senderId;
+	private Integer receiverId;
+	@DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+	private LocalDateTime from;
+	@DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+	private LocalDateTime to;
+	private Status status;
+
+	public MessageFilter() {
+	}
+
+	public Integer getSenderId() {
+		return senderId;
+	}
+	public void setSenderId(Integer senderId) {
+		this.senderId = senderId;
+	}
+	public Integer getReceiverId() {
+		return receiverId;
+	}
+	public void setReceiverId(Integer receiverId) {
+		this.receiverId = receiverId;
+	}
+	public LocalDateTime getFrom() {
+		return from;
+	}
+	public void setFrom(LocalDateTime from) {
+		this.from = from;
+	}
+	public LocalDateTime getTo() {
+		return to;
+	}
+	public void setTo(LocalDateTime to) {
+		this.to = to;
+	}
+	public Status getStatus() {
+		return status;
+	}
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+}
@@ -0,0 +1,74 @@
+package dto;
+
+import java.time.LocalDateTime;
+
+// highlight is HTML-escaped message text with the matched terms wrapped in <mark>
+public class MessageSearchHitDTO {
+    private Integer id;
+    private Integer senderId;
+    private Integer receiverId;
+    private LocalDateTime sentAt;
+    private float score;
+    private String highlight;
+
+    public MessageSearchHitDTO() {
+    }
+
+    public MessageSearchHitDTO(Integer id, Integer senderId, Integer receiverId, LocalDateTime sentAt,
+                               float score, String highlight) {
+        this.id = id;
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.sentAt = sentAt;
+        this.score = score;
+        this.highlight = highlight;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(Integer senderId) {
+        this.senderId = senderId;
+    }
+
+    public Integer getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(Integer receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public void setScore(float score) {
+        this.score = score;
+    }
+
+    public String getHighlight() {
+        return highlight;
+    }
+
+    public void setHighlight(String highlight) {
+        this.highlight = highlight;
+    }
+}
@@ -0,0 +1,53 @@
+package dto;
+
+import java.util.List;
+
+// one page of search hits, best match first
+public class MessageSearchResultDTO {
+    private List<MessageSearchHitDTO> hits;
+    private long totalHits;
+    private int page;
+    private int size;
+
+    public MessageSearchResultDTO() {
+    }
+
+    public MessageSearchResultDTO(List<MessageSearchHitDTO> hits, long totalHits, int page, int size) {
+        this.hits = hits;
+        this.totalHits = totalHits;
+        this.page = page;
+        this.size = size;
+    }
+
+    public List<MessageSearchHitDTO> getHits() {
+        return hits;
+    }
+
+    public void setHits(List<MessageSearchHitDTO> hits) {
+        this.hits = hits;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public void setTotalHits(long totalHits) {
+        this.totalHits = totalHits;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
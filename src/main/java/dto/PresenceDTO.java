@@ -0,0 +1,37 @@
+package dto;
+
+import java.time.Instant;
+
+public class PresenceDTO {
+	private Long userId;
+	private boolean online;
+	private Instant lastSeen; // null while online or if never seen since startup
+
+	public PresenceDTO() {
+	}
+
+	public PresenceDTO(Long userId, boolean online, Instant lastSeen) {
+		this.userId = userId;
+		this.online = online;
+		this.lastSeen = lastSeen;
+	}
+
+	public Long getUserId() {
+		return userId;
+	}
+	public void setUserId(Long userId) {
+		this.userId = userId;
+	}
+	public boolean isOnline() {
+		return online;
+	}
+	public void setOnline(boolean online) {
+		this.online = online;
+	}
+	public Instant getLastSeen() {
+		return lastSeen;
+	}
+	public void setLastSeen(Instant lastSeen) {
+		this.lastSeen = lastSeen;
+	}
+}
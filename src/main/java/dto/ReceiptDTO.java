@@ -0,0 +1,65 @@
+package dto;
+
+import java.time.LocalDateTime;
+
+// "messages from senderId up to (upToSentAt, upToMessageId) were DELIVERED/SEEN by readerId"; ids come
+// from per-node blocks, so the newest message seen is named by its sentAt and id together
+public class ReceiptDTO {
+    private Integer senderId;
+    private Integer readerId; // filled in from the session principal, never trusted from the client
+    private LocalDateTime upToSentAt;
+    private Integer upToMessageId;
+    private String status;
+
+    public ReceiptDTO() {
+    }
+
+    public ReceiptDTO(Integer senderId, Integer readerId, LocalDateTime upToSentAt, Integer upToMessageId,
+            String status) {
+        this.senderId = senderId;
+        this.readerId = readerId;
+        this.upToSentAt = upToSentAt;
+        this.upToMessageId = upToMessageId;
+        this.status = status;
+    }
+
+    public Integer getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(Integer senderId) {
+        this.senderId = senderId;
+    }
+
+    public Integer getReaderId() {
+        return readerId;
+    }
+
+    public void setReaderId(Integer readerId) {
+        this.readerId = readerId;
+    }
+
+    public LocalDateTime getUpToSentAt() {
+        return upToSentAt;
+    }
+
+    public void setUpToSentAt(LocalDateTime upToSentAt) {
+        this.upToSentAt = upToSentAt;
+    }
+
+    public Integer getUpToMessageId() {
+        return upToMessageId;
+    }
+
+    public void setUpToMessageId(Integer upToMessageId) {
+        this.upToMessageId = upToMessageId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,43 @@
+package dto;
+
+import java.util.List;
+
+// one slice of missed messages; cursor is the last seq in it, to send back with the next sync request
+public class SyncBatchDTO {
+    private List<SyncMessageDTO> messages;
+    private Long cursor;
+    private boolean hasMore;
+
+    public SyncBatchDTO() {
+    }
+
+    public SyncBatchDTO(List<SyncMessageDTO> messages, Long cursor, boolean hasMore) {
+        this.messages = messages;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<SyncMessageDTO> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<SyncMessageDTO> messages) {
+        this.messages = messages;
+    }
+
+    public Long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Long cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,27 @@
+package dto;
+
+import java.time.LocalDateTime;
+
+import entities.Message;
+
+// a message replayed by sync, with its position in the receiver's commit order
+public class SyncMessageDTO extends MessageDTO {
+    private Long seq;
+
+    public SyncMessageDTO() {
+    }
+
+    public SyncMessageDTO(Long seq, Integer id, String messageText, LocalDateTime sentAt, Message.Status status,
+                          Integer senderId, Integer receiverId) {
+        super(id, messageText, sentAt, status, senderId, receiverId);
+        this.seq = seq;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+}
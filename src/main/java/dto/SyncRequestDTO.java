@@ -0,0 +1,17 @@
+package dto;
+
+// cursor from the last SyncBatchDTO the client received, null on first sync
+public class SyncRequestDTO {
+    private Long cursor;
+
+    public SyncRequestDTO() {
+    }
+
+    public Long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Long cursor) {
+        this.cursor = cursor;
+    }
+}
@@ -0,0 +1,30 @@
+package dto;
+
+public class UnreadCountDTO {
+    private Integer partnerId; // null for the total across all conversations
+    private int unread;
+
+    public UnreadCountDTO() {
+    }
+
+    public UnreadCountDTO(Integer partnerId, int unread) {
+        this.partnerId = partnerId;
+        this.unread = unread;
+    }
+
+    public Integer getPartnerId() {
+        return partnerId;
+    }
+
+    public void setPartnerId(Integer partnerId) {
+        this.partnerId = partnerId;
+    }
+
+    public int getUnread() {
+        return unread;
+    }
+
+    public void setUnread(int unread) {
+        this.unread = unread;
+    }
+}
@@ -0,0 +1,72 @@
+package entities;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// cold copy of a message moved out of a dropped messages partition; rows are only ever inserted by
+// MessageArchiveService, so the entity is read-only and keeps plain user ids instead of associations
+@Entity
+@Immutable
+@Table(name = "messages_archive")
+public class ArchivedMessage {
+	@Id
+	private Integer id;
+
+	@Column(name = "sender_id", nullable = false)
+	private Integer senderId;
+
+	@Column(name = "receiver_id", nullable = false)
+	private Integer receiverId;
+
+	@Column(name = "message_text", nullable = false)
+	private String messageText;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status", nullable = false)
+	private Message.Status status;
+
+	@Column(name = "sent_at", nullable = false)
+	private LocalDateTime sentAt;
+
+	@Column(name = "receiver_seq")
+	private Long receiverSeq;
+
+	public ArchivedMessage() {
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	public Integer getSenderId() {
+		return senderId;
+	}
+
+	public Integer getReceiverId() {
+		return receiverId;
+	}
+
+	public String getMessageText() {
+		return messageText;
+	}
+
+	public Message.Status getStatus() {
+		return status;
+	}
+
+	public LocalDateTime getSentAt() {
+		return sentAt;
+	}
+
+	public Long getReceiverSeq() {
+		return receiverSeq;
+	}
+}
@@ -0,0 +1,101 @@
+package entities;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "conversations")
+public class Conversation {
+	@EmbeddedId
+	private ConversationId id;
+
+	@Column(name = "last_message_id", nullable = false)
+	private Integer lastMessageId;
+
+	@Column(name = "last_sender_id", nullable = false)
+	private Integer lastSenderId;
+
+	@Column(name = "last_message_preview", nullable = false)
+	private String lastMessagePreview;
+
+	@Column(name = "last_message_at", nullable = false)
+	private LocalDateTime lastMessageAt;
+
+	// unread messages waiting for the low / high side of the pair
+	@Column(name = "unread_low", nullable = false)
+	private int unreadLow;
+
+	@Column(name = "unread_high", nullable = false)
+	private int unreadHigh;
+
+	public Conversation() {
+	}
+
+	public ConversationId getId() {
+		return id;
+	}
+
+	public void setId(ConversationId id) {
+		this.id = id;
+	}
+
+	public Integer getLastMessageId() {
+		return lastMessageId;
+	}
+
+	public void setLastMessageId(Integer lastMessageId) {
+		this.lastMessageId = lastMessageId;
+	}
+
+	public Integer getLastSenderId() {
+		return lastSenderId;
+	}
+
+	public void setLastSenderId(Integer lastSenderId) {
+		this.lastSenderId = lastSenderId;
+	}
+
+	public String getLastMessagePreview() {
+		return lastMessagePreview;
+	}
+
+	public void setLastMessagePreview(String lastMessagePreview) {
+		this.lastMessagePreview = lastMessagePreview;
+	}
+
+	public LocalDateTime getLastMessageAt() {
+		return lastMessageAt;
+	}
+
+	public void setLastMessageAt(LocalDateTime lastMessageAt) {
+		this.lastMessageAt = lastMessageAt;
+	}
+
+	public int getUnreadLow() {
+		return unreadLow;
+	}
+
+	public void setUnreadLow(int unreadLow) {
+		this.unreadLow = unreadLow;
+	}
+
+	public int getUnreadHigh() {
+		return unreadHigh;
+	}
+
+	public void setUnreadHigh(int unreadHigh) {
+		this.unreadHigh = unreadHigh;
+	}
+
+	public Integer getPartnerId(Integer userId) {
+		return id.getUserLowId().equals(userId) ? id.getUserHighId() : id.getUserLowId();
+	}
+
+	public int getUnreadFor(Integer userId) {
+		return id.getUserLowId().equals(userId) ? unreadLow : unreadHigh;
+	}
+}
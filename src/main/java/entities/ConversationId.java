@@ -0,0 +1,53 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+// normalized user pair, the smaller id is always userLowId
+@Embeddable
+public class ConversationId implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Column(name = "user_low_id")
+	private Integer userLowId;
+
+	@Column(name = "user_high_id")
+	private Integer userHighId;
+
+	public ConversationId() {
+	}
+
+	public ConversationId(Integer userLowId, Integer userHighId) {
+		this.userLowId = userLowId;
+		this.userHighId = userHighId;
+	}
+
+	public static ConversationId of(Integer userId1, Integer userId2) {
+		return userId1 <= userId2
+				? new ConversationId(userId1, userId2)
+				: new ConversationId(userId2, userId1);
+	}
+
+	public Integer getUserLowId() {
+		return userLowId;
+	}
+
+	public Integer getUserHighId() {
+		return userHighId;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ConversationId other)) return false;
+		return Objects.equals(userLowId, other.userLowId) && Objects.equals(userHighId, other.userHighId);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(userLowId, userHighId);
+	}
+}
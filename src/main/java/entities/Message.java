@@ -9,8 +9,8 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 @Entity
 @Table(name = "messages")
 public class Message {
+    // assigned from MessageIdAllocator so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
     @Column(name = "message_text", nullable = false)
@@ -35,6 +35,10 @@ public class Message {
     @JoinColumn(name = "receiver_id")
     private User receiver;
 
+    // position in the receiver's commit order, set by MessageService in the saving transaction
+    @Column(name = "receiver_seq")
+    private Long receiverSeq;
+
     public Message() {}
 
     public Message(Integer id, String messageText, User sender, User receiver, Status status) {
@@ -98,6 +102,14 @@ public class Message {
     public void setReceiver(User receiver) {
         this.receiver = receiver;
     }
+
+    public Long getReceiverSeq() {
+        return receiverSeq;
+    }
+
+    public void setReceiverSeq(Long receiverSeq) {
+        this.receiverSeq = receiverSeq;
+    }
  // Add these to Message.java
     public Integer getSenderId() {
         return sender != null ? sender.getId() : null;
@@ -0,0 +1,37 @@
+package entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// last receiver_seq handed out per receiver, see V22 and MessageService.assignReceiverSeqs
+@Entity
+@Table(name = "receiver_sequences")
+public class ReceiverSequence {
+	@Id
+	@Column(name = "user_id")
+	private Integer userId;
+
+	@Column(name = "last_seq", nullable = false)
+	private long lastSeq;
+
+	public ReceiverSequence() {
+	}
+
+	public Integer getUserId() {
+		return userId;
+	}
+
+	public void setUserId(Integer userId) {
+		this.userId = userId;
+	}
+
+	public long getLastSeq() {
+		return lastSeq;
+	}
+
+	public void setLastSeq(long lastSeq) {
+		this.lastSeq = lastSeq;
+	}
+}
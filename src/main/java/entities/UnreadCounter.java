@@ -0,0 +1,37 @@
+package entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// total unread messages per user, kept in step with conversations.unread_*
+@Entity
+@Table(name = "unread_counters")
+public class UnreadCounter {
+	@Id
+	@Column(name = "user_id")
+	private Integer userId;
+
+	@Column(name = "total", nullable = false)
+	private int total;
+
+	public UnreadCounter() {
+	}
+
+	public Integer getUserId() {
+		return userId;
+	}
+
+	public void setUserId(Integer userId) {
+		this.userId = userId;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public void setTotal(int total) {
+		this.total = total;
+	}
+}
@@ -4,6 +4,8 @@ import java.io.IOException;
 import service.JwtService;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -17,6 +19,7 @@ import jakarta.servlet.http.HttpServletResponse;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
     private final JwtService jwtService;
 
     public JwtAuthenticationFilter(JwtService jwtService) {
@@ -27,6 +30,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String path = request.getRequestURI();
         boolean skip = path.startsWith("/user/") || 
         		path.startsWith("/ws/") ||
+        		path.equals("/stomp") ||
         		//path.startsWith("/api/messages/chat/") ||
         		//path.startsWith("/api")   ||
         		//path.startsWith("/message")  ||
@@ -35,14 +39,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 // path.contains("/chat")  ||
                        path.equals("/user") || 
                        (path.equals("/login") && "POST".equals(request.getMethod()));
-        System.out.println("Path: " + path + ", Skip filter: " + skip);
+        log.trace("Path: {}, skip filter: {}", path, skip);
         return skip;
     }
    
     @Override
 	public void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        System.out.println("JWT Filter executing for: " + request.getRequestURI());
+        log.trace("JWT filter executing for: {}", request.getRequestURI());
         var authheader = request.getHeader("Authorization");
 
         if (authheader == null || !authheader.startsWith("Bearer ")) {
@@ -51,16 +55,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         
         var token = authheader.replace("Bearer ", "");
-        if (!jwtService.validateToken(token)) {
+        var principal = jwtService.parse(token);
+        if (principal == null) {
         	filterChain.doFilter(request, response);
         	return;
         }
         
-        var role= jwtService.getRoleFromToken(token);
         var authenication = new UsernamePasswordAuthenticationToken(
-        		jwtService.getIdFromToken(token),
+        		principal.getId(),
         		null,
-        		List.of(new SimpleGrantedAuthority("ROLE_"+role))
+        		List.of(new SimpleGrantedAuthority("ROLE_"+principal.getRole()))
         		);
         authenication.setDetails(
         		new WebAuthenticationDetailsSource().buildDetails(request)
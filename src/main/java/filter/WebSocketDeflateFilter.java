@@ -0,0 +1,59 @@
+package filter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Tomcat accepts permessage-deflate on /ws and /stomp whenever the client offers it, reading the offer
+// straight from the handshake request, so Spring's extension negotiation cannot turn it off. With
+// chat.websocket.deflate.enabled=false the offer is hidden from the upgrade and frames go out as is.
+// Tomcat compresses every frame of a deflate session; there is no per-frame size threshold.
+@Component
+public class WebSocketDeflateFilter extends OncePerRequestFilter {
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    private final boolean enabled;
+
+    public WebSocketDeflateFilter(@Value("${chat.websocket.deflate.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return enabled || !"websocket".equalsIgnoreCase(request.getHeader("Upgrade"));
+    }
+
+    // permessage-deflate is the only extension Tomcat implements, so the whole header goes
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        filterChain.doFilter(new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaderNames() {
+                return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+                        .filter(name -> !EXTENSIONS_HEADER.equalsIgnoreCase(name))
+                        .toList());
+            }
+        }, response);
+    }
+}
@@ -4,10 +4,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableJpaRepositories("repository")
 @SpringBootApplication(scanBasePackages = { "controller","repository","mappers","dto","entities","service","config","filter","dto"})
 @EntityScan("entities")
+@EnableScheduling
 public class MyAppApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,106 @@
+package repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import dto.AdminMessageDTO;
+import dto.MessageDTO;
+import dto.SyncMessageDTO;
+import entities.ArchivedMessage;
+import entities.Message.Status;
+import jakarta.persistence.QueryHint;
+
+// the MessageRepository read queries, against messages_archive; MessageService continues into these
+// when a page runs past the hot table
+@Repository
+public interface ArchivedMessageRepository extends JpaRepository<ArchivedMessage, Integer> {
+
+	@Query("SELECT MAX(a.id) FROM ArchivedMessage a")
+	Integer findMaxId();
+
+	default List<MessageDTO> findLatestChatPage(Integer senderId, Integer receiverId, Limit limit) {
+		List<MessageDTO> sent = findLatestSent(senderId, receiverId, limit);
+		return senderId.equals(receiverId) ? sent
+				: ChatPages.merge(sent, findLatestSent(receiverId, senderId, limit), limit);
+	}
+
+	default List<MessageDTO> findChatPageBefore(Integer senderId, Integer receiverId, LocalDateTime beforeSentAt,
+			Integer beforeId, Limit limit) {
+		List<MessageDTO> sent = findSentBefore(senderId, receiverId, beforeSentAt, beforeId, limit);
+		return senderId.equals(receiverId) ? sent
+				: ChatPages.merge(sent, findSentBefore(receiverId, senderId, beforeSentAt, beforeId, limit), limit);
+	}
+
+	@Query("SELECT new dto.MessageDTO(a.id, a.messageText, a.sentAt, a.status, a.senderId, a.receiverId) " +
+	       "FROM ArchivedMessage a WHERE a.senderId = :senderId AND a.receiverId = :receiverId " +
+	       "ORDER BY a.sentAt DESC, a.id DESC")
+	List<MessageDTO> findLatestSent(@Param("senderId") Integer senderId,
+	                                @Param("receiverId") Integer receiverId,
+	                                Limit limit);
+
+	@Query("SELECT new dto.MessageDTO(a.id, a.messageText, a.sentAt, a.status, a.senderId, a.receiverId) " +
+	       "FROM ArchivedMessage a WHERE a.senderId = :senderId AND a.receiverId = :receiverId " +
+	       "AND (a.sentAt < :beforeSentAt OR (a.sentAt = :beforeSentAt AND a.id < :beforeId)) " +
+	       "ORDER BY a.sentAt DESC, a.id DESC")
+	List<MessageDTO> findSentBefore(@Param("senderId") Integer senderId,
+	                                @Param("receiverId") Integer receiverId,
+	                                @Param("beforeSentAt") LocalDateTime beforeSentAt,
+	                                @Param("beforeId") Integer beforeId,
+	                                Limit limit);
+
+	@Query("SELECT new dto.SyncMessageDTO(a.receiverSeq, a.id, a.messageText, a.sentAt, a.status, " +
+	       "a.senderId, a.receiverId) " +
+	       "FROM ArchivedMessage a WHERE a.receiverId = :receiverId AND a.receiverSeq > :afterSeq " +
+	       "ORDER BY a.receiverSeq")
+	List<SyncMessageDTO> findReceivedAfter(@Param("receiverId") Integer receiverId,
+	                                       @Param("afterSeq") Long afterSeq,
+	                                       Limit limit);
+
+	@Query("""
+		    SELECT new dto.AdminMessageDTO(a.id, a.messageText, a.sentAt, a.status,
+		           s.id, s.name, s.email, r.id, r.name, r.email)
+		    FROM ArchivedMessage a JOIN User s ON s.id = a.senderId JOIN User r ON r.id = a.receiverId
+		    WHERE (:senderId IS NULL OR a.senderId = :senderId)
+		      AND (:receiverId IS NULL OR a.receiverId = :receiverId)
+		      AND (:from IS NULL OR a.sentAt >= :from)
+		      AND (:to IS NULL OR a.sentAt < :to)
+		      AND (:status IS NULL OR a.status = :status)
+		      AND (:beforeId IS NULL OR a.id < :beforeId)
+		    ORDER BY a.id DESC
+		""")
+	List<AdminMessageDTO> browseMessages(@Param("senderId") Integer senderId,
+	                                     @Param("receiverId") Integer receiverId,
+	                                     @Param("from") LocalDateTime from,
+	                                     @Param("to") LocalDateTime to,
+	                                     @Param("status") Status status,
+	                                     @Param("beforeId") Integer beforeId,
+	                                     Limit limit);
+
+	@QueryHints({
+		@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE)
+	})
+	@Query("""
+		    SELECT new dto.MessageDTO(a.id, a.messageText, a.sentAt, a.status, a.senderId, a.receiverId)
+		    FROM ArchivedMessage a
+		    WHERE (:senderId IS NULL OR a.senderId = :senderId)
+		      AND (:receiverId IS NULL OR a.receiverId = :receiverId)
+		      AND (:from IS NULL OR a.sentAt >= :from)
+		      AND (:to IS NULL OR a.sentAt < :to)
+		      AND (:status IS NULL OR a.status = :status)
+		    ORDER BY a.id
+		""")
+	Stream<MessageDTO> streamMessages(@Param("senderId") Integer senderId,
+	                                  @Param("receiverId") Integer receiverId,
+	                                  @Param("from") LocalDateTime from,
+	                                  @Param("to") LocalDateTime to,
+	                                  @Param("status") Status status);
+}
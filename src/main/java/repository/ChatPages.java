@@ -0,0 +1,37 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+
+import dto.MessageDTO;
+
+// A conversation page is read one direction at a time: each seek walks (sender_id, receiver_id, sent_at, id)
+// backwards and stops at the limit. An OR over both directions in one query makes MySQL read both ranges
+// in full and filesort them, so a page would cost more the longer the conversation gets.
+final class ChatPages {
+	private static final Comparator<MessageDTO> NEWEST_FIRST = Comparator.comparing(MessageDTO::getSentAt)
+			.thenComparing(MessageDTO::getId)
+			.reversed();
+
+	private ChatPages() {
+	}
+
+	// both inputs newest first, as the seeks return them; keeps the newest limit rows of the two
+	static List<MessageDTO> merge(List<MessageDTO> sent, List<MessageDTO> received, Limit limit) {
+		int size = Math.min(limit.max(), sent.size() + received.size());
+		List<MessageDTO> page = new ArrayList<>(size);
+		int s = 0;
+		int r = 0;
+		while (page.size() < size) {
+			if (r == received.size() || s < sent.size() && NEWEST_FIRST.compare(sent.get(s), received.get(r)) <= 0) {
+				page.add(sent.get(s++));
+			} else {
+				page.add(received.get(r++));
+			}
+		}
+		return page;
+	}
+}
@@ -0,0 +1,134 @@
+package repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import entities.Conversation;
+import entities.ConversationId;
+
+@Repository
+public interface ConversationRepository extends JpaRepository<Conversation, ConversationId> {
+
+	// one ordered range scan per side, on (user_low_id, last_message_at) and (user_high_id, last_message_at);
+	// an OR over both columns is an index merge plus a filesort. Both runs come back sorted, so the sort
+	// below is a single merge.
+	default List<Conversation> findInbox(Integer userId) {
+		List<Conversation> inbox = new ArrayList<>(findInboxAsLow(userId));
+		inbox.addAll(findInboxAsHigh(userId));
+		inbox.sort(Comparator.comparing(Conversation::getLastMessageAt).reversed());
+		return inbox;
+	}
+
+	@Query("""
+			SELECT c FROM Conversation c
+			WHERE c.id.userLowId = :userId
+			ORDER BY c.lastMessageAt DESC
+			""")
+	List<Conversation> findInboxAsLow(@Param("userId") Integer userId);
+
+	// a conversation with oneself is already in the low side
+	@Query("""
+			SELECT c FROM Conversation c
+			WHERE c.id.userHighId = :userId AND c.id.userLowId <> :userId
+			ORDER BY c.lastMessageAt DESC
+			""")
+	List<Conversation> findInboxAsHigh(@Param("userId") Integer userId);
+
+	// single-statement upsert so concurrent sends to the same pair never race on insert. The last-message
+	// columns only move to a message sent later, by (last_message_at, last_message_id): ids come from per-node
+	// blocks and are not in send order. Assignments see the columns already updated, so the comparison runs
+	// on the old pair until last_message_id, and last_message_at goes last
+	@Modifying
+	@Query(value = """
+			INSERT INTO conversations (user_low_id, user_high_id, last_message_id, last_sender_id,
+			                           last_message_preview, last_message_at, unread_low, unread_high)
+			VALUES (:lowId, :highId, :messageId, :senderId, :preview, :sentAt, :unreadLow, :unreadHigh)
+			ON DUPLICATE KEY UPDATE
+			  last_sender_id = CASE WHEN last_message_at < VALUES(last_message_at)
+			      OR (last_message_at = VALUES(last_message_at) AND last_message_id < VALUES(last_message_id))
+			    THEN VALUES(last_sender_id) ELSE last_sender_id END,
+			  last_message_preview = CASE WHEN last_message_at < VALUES(last_message_at)
+			      OR (last_message_at = VALUES(last_message_at) AND last_message_id < VALUES(last_message_id))
+			    THEN VALUES(last_message_preview) ELSE last_message_preview END,
+			  unread_low = unread_low + VALUES(unread_low),
+			  unread_high = unread_high + VALUES(unread_high),
+			  last_message_id = CASE WHEN last_message_at < VALUES(last_message_at)
+			      OR (last_message_at = VALUES(last_message_at) AND last_message_id < VALUES(last_message_id))
+			    THEN VALUES(last_message_id) ELSE last_message_id END,
+			  last_message_at = GREATEST(last_message_at, VALUES(last_message_at))
+			""", nativeQuery = true)
+	int upsertLastMessage(@Param("lowId") Integer lowId,
+	                      @Param("highId") Integer highId,
+	                      @Param("messageId") Integer messageId,
+	                      @Param("senderId") Integer senderId,
+	                      @Param("preview") String preview,
+	                      @Param("sentAt") LocalDateTime sentAt,
+	                      @Param("unreadLow") int unreadLow,
+	                      @Param("unreadHigh") int unreadHigh);
+
+	// after a SEEN receipt, the reader's side drops by the number of messages that changed
+	@Modifying
+	@Query(value = """
+			UPDATE conversations
+			SET unread_low = CASE WHEN :readerIsLow THEN GREATEST(unread_low - :seen, 0) ELSE unread_low END,
+			    unread_high = CASE WHEN :readerIsLow THEN unread_high ELSE GREATEST(unread_high - :seen, 0) END
+			WHERE user_low_id = :lowId AND user_high_id = :highId
+			""", nativeQuery = true)
+	int markSeen(@Param("lowId") Integer lowId,
+	             @Param("highId") Integer highId,
+	             @Param("readerIsLow") boolean readerIsLow,
+	             @Param("seen") int seen);
+
+	// rebuilds every row from both tiers, used by the backfill and reconciliation jobs. The last message is
+	// the pair's greatest (sent_at, id) in either tier; unread only counts the hot table, since receipts do
+	// not reach the archive and the archiver stores its rows as SEEN (older archive rows may not be)
+	@Modifying
+	@Query(value = """
+			INSERT INTO conversations (user_low_id, user_high_id, last_message_id, last_sender_id,
+			                           last_message_preview, last_message_at, unread_low, unread_high)
+			SELECT l.user_low_id, l.user_high_id, m.id, m.sender_id, LEFT(m.message_text, 255), m.sent_at,
+			       COALESCE(u.unread_low, 0), COALESCE(u.unread_high, 0)
+			FROM (
+			  SELECT LEAST(sender_id, receiver_id) AS user_low_id,
+			         GREATEST(sender_id, receiver_id) AS user_high_id,
+			         id,
+			         ROW_NUMBER() OVER (PARTITION BY LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id)
+			                            ORDER BY sent_at DESC, id DESC) AS rn
+			  FROM (
+			    SELECT id, sender_id, receiver_id, sent_at FROM messages
+			    UNION ALL
+			    SELECT id, sender_id, receiver_id, sent_at FROM messages_archive
+			  ) all_messages
+			) l
+			JOIN (
+			  SELECT id, sender_id, message_text, sent_at FROM messages
+			  UNION ALL
+			  SELECT id, sender_id, message_text, sent_at FROM messages_archive
+			) m ON m.id = l.id
+			LEFT JOIN (
+			  SELECT LEAST(sender_id, receiver_id) AS user_low_id,
+			         GREATEST(sender_id, receiver_id) AS user_high_id,
+			         SUM(CASE WHEN status <> 'SEEN' AND receiver_id <= sender_id THEN 1 ELSE 0 END) AS unread_low,
+			         SUM(CASE WHEN status <> 'SEEN' AND receiver_id > sender_id THEN 1 ELSE 0 END) AS unread_high
+			  FROM messages
+			  GROUP BY LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id)
+			) u ON u.user_low_id = l.user_low_id AND u.user_high_id = l.user_high_id
+			WHERE l.rn = 1
+			ON DUPLICATE KEY UPDATE
+			  last_message_id = VALUES(last_message_id),
+			  last_sender_id = VALUES(last_sender_id),
+			  last_message_preview = VALUES(last_message_preview),
+			  last_message_at = VALUES(last_message_at),
+			  unread_low = VALUES(unread_low),
+			  unread_high = VALUES(unread_high)
+			""", nativeQuery = true)
+	int rebuildFromMessages();
+}
@@ -1,56 +1,130 @@
 package repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import dto.AdminMessageDTO;
+import dto.MessageDTO;
+import dto.SyncMessageDTO;
 import entities.Message;
+import entities.Message.Status;
+import jakarta.persistence.QueryHint;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Integer > {
-	@Query("SELECT m FROM Message m WHERE " +
-		       "(m.sender.id = :senderId AND m.receiver.id = :receiverId) OR " +
-		       "(m.sender.id = :receiverId AND m.receiver.id = :senderId) " +
-		       "ORDER BY m.sentAt ASC")
-		List<Message> findChatHistory(@Param("senderId") Integer senderId,
-		                              @Param("receiverId") Integer receiverId);
+	// newest page of a conversation, cursor pages below walk backwards on (sentAt, id); see ChatPages
+	// read paths select straight into DTOs: m.sender.id is the FK column, so no join and no managed entities
+	default List<MessageDTO> findLatestChatPage(Integer senderId, Integer receiverId, Limit limit) {
+		List<MessageDTO> sent = findLatestSent(senderId, receiverId, limit);
+		return senderId.equals(receiverId) ? sent
+				: ChatPages.merge(sent, findLatestSent(receiverId, senderId, limit), limit);
+	}
+
+	default List<MessageDTO> findChatPageBefore(Integer senderId, Integer receiverId, LocalDateTime beforeSentAt,
+			Integer beforeId, Limit limit) {
+		List<MessageDTO> sent = findSentBefore(senderId, receiverId, beforeSentAt, beforeId, limit);
+		return senderId.equals(receiverId) ? sent
+				: ChatPages.merge(sent, findSentBefore(receiverId, senderId, beforeSentAt, beforeId, limit), limit);
+	}
+
+	// one direction, served in order by (sender_id, receiver_id, sent_at, id)
+	@Query("SELECT new dto.MessageDTO(m.id, m.messageText, m.sentAt, m.status, m.sender.id, m.receiver.id) " +
+	       "FROM Message m WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId " +
+	       "ORDER BY m.sentAt DESC, m.id DESC")
+	List<MessageDTO> findLatestSent(@Param("senderId") Integer senderId,
+	                                @Param("receiverId") Integer receiverId,
+	                                Limit limit);
+
+	@Query("SELECT new dto.MessageDTO(m.id, m.messageText, m.sentAt, m.status, m.sender.id, m.receiver.id) " +
+	       "FROM Message m WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId " +
+	       "AND (m.sentAt < :beforeSentAt OR (m.sentAt = :beforeSentAt AND m.id < :beforeId)) " +
+	       "ORDER BY m.sentAt DESC, m.id DESC")
+	List<MessageDTO> findSentBefore(@Param("senderId") Integer senderId,
+	                                @Param("receiverId") Integer receiverId,
+	                                @Param("beforeSentAt") LocalDateTime beforeSentAt,
+	                                @Param("beforeId") Integer beforeId,
+	                                Limit limit);
 
 		@Query("SELECT m FROM Message m WHERE " +
 		       "m.sender.id = :userId OR m.receiver.id = :userId " +
 		       "ORDER BY m.sentAt DESC")
 		List<Message> findAllMessagesForUser(@Param("userId") Integer userId);
 
-		@Query("SELECT m FROM Message m WHERE " +
-		       "m.receiver.id = :userId AND m.status != 'READ' " +
-		       "ORDER BY m.sentAt DESC")
-		List<Message> findUnreadMessages(@Param("userId") Integer userId);
 		
+		// reconnect sync, served by (receiver_id, receiver_seq)
+		@Query("SELECT new dto.SyncMessageDTO(m.receiverSeq, m.id, m.messageText, m.sentAt, m.status, " +
+		       "m.sender.id, m.receiver.id) " +
+		       "FROM Message m WHERE m.receiver.id = :receiverId AND m.receiverSeq > :afterSeq ORDER BY m.receiverSeq")
+		List<SyncMessageDTO> findReceivedAfter(@Param("receiverId") Integer receiverId,
+		                                @Param("afterSeq") Long afterSeq,
+		                                Limit limit);
+
+		// receipts: one statement moves every message of the direction sent up to (upToSentAt, upToId) forward;
+		// ids alone are not in send order across nodes. A range on (sender_id, receiver_id, sent_at, id)
+		@Modifying
+		@Query("""
+			    UPDATE Message m SET m.status = :status
+			    WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId
+			      AND (m.sentAt < :upToSentAt OR (m.sentAt = :upToSentAt AND m.id <= :upToId))
+			      AND m.status IN :fromStatuses
+			""")
+			int updateStatusUpTo(@Param("senderId") Integer senderId,
+			                     @Param("receiverId") Integer receiverId,
+			                     @Param("upToSentAt") LocalDateTime upToSentAt,
+			                     @Param("upToId") Integer upToId,
+			                     @Param("status") Status status,
+			                     @Param("fromStatuses") Collection<Status> fromStatuses);
+
+		// for admin panel, keyset paged on id (newest first); names come from the same join, not from proxies
 		@Query("""
-			    SELECT m FROM Message m
-			    WHERE m.id IN (
-			        SELECT sub.id FROM Message sub
-			        WHERE sub.sender.id = :userId OR sub.receiver.id = :userId
-			        AND sub.sentAt = (
-			            SELECT MAX(sub2.sentAt)
-			            FROM Message sub2
-			            WHERE (sub2.sender.id = :userId AND sub2.receiver.id = 
-			                   CASE WHEN sub.sender.id = :userId THEN sub.receiver.id ELSE sub.sender.id END)
-			               OR (sub2.receiver.id = :userId AND sub2.sender.id = 
-			                   CASE WHEN sub.receiver.id = :userId THEN sub.sender.id ELSE sub.receiver.id END)
-			        )
-			    )
-			    ORDER BY m.sentAt DESC
+			    SELECT new dto.AdminMessageDTO(m.id, m.messageText, m.sentAt, m.status,
+			           s.id, s.name, s.email, r.id, r.name, r.email)
+			    FROM Message m JOIN m.sender s JOIN m.receiver r
+			    WHERE (:senderId IS NULL OR m.sender.id = :senderId)
+			      AND (:receiverId IS NULL OR m.receiver.id = :receiverId)
+			      AND (:from IS NULL OR m.sentAt >= :from)
+			      AND (:to IS NULL OR m.sentAt < :to)
+			      AND (:status IS NULL OR m.status = :status)
+			      AND (:beforeId IS NULL OR m.id < :beforeId)
+			    ORDER BY m.id DESC
 			""")
-			List<Message> findLatestMessagePerChatPartner(@Param("userId") Integer userId);
+			List<AdminMessageDTO> browseMessages(@Param("senderId") Integer senderId,
+			                             @Param("receiverId") Integer receiverId,
+			                             @Param("from") LocalDateTime from,
+			                             @Param("to") LocalDateTime to,
+			                             @Param("status") Status status,
+			                             @Param("beforeId") Integer beforeId,
+			                             Limit limit);
 
-		// for admin panel 
+		// forward-only cursor for exports; MIN_VALUE makes Connector/J stream rows instead of buffering
+		@QueryHints({
+			@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE)
+		})
 		@Query("""
-			    SELECT m FROM Message m
-			    ORDER BY m.sentAt DESC
+			    SELECT new dto.MessageDTO(m.id, m.messageText, m.sentAt, m.status, m.sender.id, m.receiver.id)
+			    FROM Message m
+			    WHERE (:senderId IS NULL OR m.sender.id = :senderId)
+			      AND (:receiverId IS NULL OR m.receiver.id = :receiverId)
+			      AND (:from IS NULL OR m.sentAt >= :from)
+			      AND (:to IS NULL OR m.sentAt < :to)
+			      AND (:status IS NULL OR m.status = :status)
+			    ORDER BY m.id
 			""")
-			List<Message> findAllMessages();
+			Stream<MessageDTO> streamMessages(@Param("senderId") Integer senderId,
+			                               @Param("receiverId") Integer receiverId,
+			                               @Param("from") LocalDateTime from,
+			                               @Param("to") LocalDateTime to,
+			                               @Param("status") Status status);
 
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import entities.ReceiverSequence;
+
+@Repository
+public interface ReceiverSequenceRepository extends JpaRepository<ReceiverSequence, Integer> {
+
+	// reserves count numbers for the receiver; the row stays locked until the caller's transaction ends
+	@Modifying
+	@Query(value = """
+			INSERT INTO receiver_sequences (user_id, last_seq) VALUES (:userId, :count)
+			ON DUPLICATE KEY UPDATE last_seq = last_seq + VALUES(last_seq)
+			""", nativeQuery = true)
+	int advance(@Param("userId") Integer userId, @Param("count") int count);
+
+	@Query(value = "SELECT last_seq FROM receiver_sequences WHERE user_id = :userId", nativeQuery = true)
+	long findLastSeq(@Param("userId") Integer userId);
+}
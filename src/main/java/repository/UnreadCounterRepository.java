@@ -0,0 +1,34 @@
+package repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import entities.UnreadCounter;
+
+@Repository
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, Integer> {
+
+	@Modifying
+	@Query(value = """
+			INSERT INTO unread_counters (user_id, total) VALUES (:userId, :delta)
+			ON DUPLICATE KEY UPDATE total = GREATEST(total + VALUES(total), 0)
+			""", nativeQuery = true)
+	int add(@Param("userId") Integer userId, @Param("delta") int delta);
+
+	// drift repair: totals are re-derived from the per-conversation counters
+	@Modifying
+	@Query(value = """
+			INSERT INTO unread_counters (user_id, total)
+			SELECT user_id, SUM(unread) FROM (
+			  SELECT user_low_id AS user_id, unread_low AS unread FROM conversations
+			  UNION ALL
+			  SELECT user_high_id, unread_high FROM conversations
+			) per_side
+			GROUP BY user_id
+			ON DUPLICATE KEY UPDATE total = VALUES(total)
+			""", nativeQuery = true)
+	int rebuildFromConversations();
+}
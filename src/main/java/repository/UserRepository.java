@@ -2,11 +2,13 @@ package repository;
 
 import java.util.Optional;
 import entities.User.Role;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import dto.UserDetail;
 import entities.User;
 
 @Repository
@@ -19,4 +21,46 @@ public interface UserRepository extends JpaRepository<User, Integer >{
 			    """)
 			Optional<User> findUserById(@Param("userid") Integer id);
 	 List<User> findByRole(Role role);
+
+	 // slim rows for the user directory, never the entity with its password and message collections
+	 @Query("SELECT new dto.UserDetail(u.id, u.name, u.email) FROM User u WHERE u.role = :role ORDER BY u.id")
+	 List<UserDetail> findDirectory(@Param("role") Role role);
+
+	 // prefix search, one range per index: name matches keyset paged on (name, id) off (role, name), then
+	 // users matching on email only, on (email, id) off (role, email); prefix must already be escaped with '!'
+	 @Query("""
+			    SELECT new dto.UserDetail(u.id, u.name, u.email) FROM User u
+			    WHERE u.role = :role AND u.name LIKE :prefix ESCAPE '!'
+			      AND (u.name > :afterName OR (u.name = :afterName AND u.id > :afterId))
+			    ORDER BY u.name, u.id
+			    """)
+	 List<UserDetail> searchDirectoryByName(@Param("role") Role role,
+			 @Param("prefix") String prefix,
+			 @Param("afterName") String afterName,
+			 @Param("afterId") Integer afterId,
+			 Limit limit);
+
+	 @Query("""
+			    SELECT new dto.UserDetail(u.id, u.name, u.email) FROM User u
+			    WHERE u.role = :role AND u.email LIKE :prefix ESCAPE '!'
+			      AND (u.name IS NULL OR u.name NOT LIKE :prefix ESCAPE '!')
+			      AND (u.email > :afterEmail OR (u.email = :afterEmail AND u.id > :afterId))
+			    ORDER BY u.email, u.id
+			    """)
+	 List<UserDetail> searchDirectoryByEmail(@Param("role") Role role,
+			 @Param("prefix") String prefix,
+			 @Param("afterEmail") String afterEmail,
+			 @Param("afterId") Integer afterId,
+			 Limit limit);
+
+	 // the row a search page ended on, if it is still in the searched role; matchedName tells which of the
+	 // two ranges it came from
+	 @Query("""
+			    SELECT new dto.UserDetail(u.id, u.name, u.email) FROM User u
+			    WHERE u.id = :id AND u.role = :role AND (:matchedName = false OR u.name LIKE :prefix ESCAPE '!')
+			    """)
+	 Optional<UserDetail> findSearchCursor(@Param("role") Role role,
+			 @Param("id") Integer id,
+			 @Param("prefix") String prefix,
+			 @Param("matchedName") boolean matchedName);
 }
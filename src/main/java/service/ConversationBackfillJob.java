@@ -0,0 +1,34 @@
+package service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import repository.ConversationRepository;
+
+// populates conversations from existing messages rows, enable once after deploying V15
+@Component
+@Transactional
+public class ConversationBackfillJob implements ApplicationRunner {
+	private final ConversationRepository conversationRepository;
+
+	@Value("${chat.conversations.backfill-on-startup:false}")
+	private boolean backfillOnStartup;
+
+	public ConversationBackfillJob(ConversationRepository conversationRepository) {
+		this.conversationRepository = conversationRepository;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (backfillOnStartup) {
+			backfill();
+		}
+	}
+
+	public int backfill() {
+		return conversationRepository.rebuildFromMessages();
+	}
+}
@@ -7,18 +7,66 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import dto.JwtPrincipal;
 import entities.User;
 import entities.User.Role;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
 
 @Component
 @Service
 public class JwtService {
 
-	@Value("${jwt.secret}")
-	private String secret;
     private final long tokenExpiration = 86400000; // 1 day
+    // key and parser are immutable and thread-safe, build them once instead of per call
+    private final SecretKey key;
+    private final JwtParser parser;
+    // verified tokens by SHA-256 of the token, each entry lives until its token expires
+    private final Cache<String, JwtPrincipal> verified;
+    // every authenticated HTTP request and STOMP CONNECT goes through parse
+    private final Timer cachedParse;
+    private final Timer verifiedParse;
+
+    public JwtService(@Value("${jwt.secret}") String secret,
+                      @Value("${jwt.cache.max-size:10000}") long cacheSize,
+                      MeterRegistry meterRegistry) {
+        this.cachedParse = Timer.builder("jwt.parse").tag("cache", "hit").register(meterRegistry);
+        this.verifiedParse = Timer.builder("jwt.parse").tag("cache", "miss").register(meterRegistry);
+        this.key = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, JwtPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String hash, JwtPrincipal principal, long currentTime) {
+                        long millis = principal.getExpiresAt().toEpochMilli() - System.currentTimeMillis();
+                        return Math.max(0, millis) * 1_000_000;
+                    }
+                    @Override
+                    public long expireAfterUpdate(String hash, JwtPrincipal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                    @Override
+                    public long expireAfterRead(String hash, JwtPrincipal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
     
     public String generateToken( User user ) {
         return Jwts.builder()
@@ -28,28 +76,46 @@ public class JwtService {
                    .claim("role", user.getRole())
                    .issuedAt(new Date())
                    .expiration(new Date(System.currentTimeMillis() +  tokenExpiration))
-                   .signWith(Keys.hmacShaKeyFor(secret.getBytes()))
+                   .signWith(key)
                    .compact();
     }
 
+    // verifies the token once and returns its principal, or null if it is invalid or expired
+    public JwtPrincipal parse(String token) {
+        long start = System.nanoTime();
+        String hash = hash(token);
+        JwtPrincipal principal = verified.getIfPresent(hash);
+        if (principal == null) {
+            try {
+                Claims claims = getClaims(token);
+                String role = claims.get("role", String.class);
+                Date expiration = claims.getExpiration();
+                // generateToken always sets all three; without an expiry a token would stay valid and
+                // cached forever, so it is refused rather than trusted
+                if (claims.getSubject() == null || role == null || expiration == null) {
+                    throw new MalformedJwtException("Token is missing its subject, role or expiry");
+                }
+                principal = new JwtPrincipal(Long.valueOf(claims.getSubject()), Role.valueOf(role),
+                        expiration.toInstant());
+            }
+            catch (JwtException | IllegalArgumentException ex) {
+                verifiedParse.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return null;
+            }
+            verified.put(hash, principal);
+            verifiedParse.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } else {
+            cachedParse.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return principal.isExpired() ? null : principal;
+    }
+
     public boolean validateToken(String token) {
-    	try {
- var claims = getClaims(token);
- 
- return  claims.getExpiration().after(new Date());
-    	}
-    	catch (JwtException ex) {
-    		return false;  
-    	}
-                
+        return parse(token) != null;
     }
 
 	private Claims getClaims(String token) {
-		 return Jwts.parser()
-		            .verifyWith(Keys.hmacShaKeyFor(secret.getBytes()))
-		            .build()
-		            .parseSignedClaims(token)
-		            .getPayload();
+		 return parser.parseSignedClaims(token).getPayload();
 	}
 
     
@@ -61,6 +127,13 @@ public class JwtService {
         return Role.valueOf(getClaims(token).get("role", String.class));
     }
 
-	
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-}
\ No newline at end of file
+}
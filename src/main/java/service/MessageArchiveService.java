@@ -0,0 +1,220 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import entities.ConversationId;
+import repository.ArchivedMessageRepository;
+import repository.ConversationRepository;
+import repository.UnreadCounterRepository;
+
+// Keeps the partitioned messages table (V21) small: splits pmax so the coming months have their own
+// partition, and moves partitions older than hot-months into messages_archive before dropping them.
+// Also tracks whether anything is archived yet, so readers skip the archive until it has rows.
+// Receipts only reach the hot table, so archived messages are stored as SEEN and leave the unread counters.
+@Service
+public class MessageArchiveService {
+	private static final Logger log = LoggerFactory.getLogger(MessageArchiveService.class);
+	private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+	private static final String LOCK_NAME = "chat.messages.archive";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final ArchivedMessageRepository archivedMessageRepository;
+	private final ConversationRepository conversationRepository;
+	private final UnreadCounterRepository unreadCounterRepository;
+	private final TransactionTemplate transactionTemplate;
+
+	@Value("${chat.archive.enabled:true}")
+	private boolean enabled;
+
+	@Value("${chat.archive.hot-months:6}")
+	private int hotMonths;
+
+	@Value("${chat.archive.months-ahead:3}")
+	private int monthsAhead;
+
+	@Value("${chat.archive.chunk-size:5000}")
+	private int chunkSize;
+
+	private volatile Integer archivedMaxId;
+
+	private record Partition(String name, String description) {
+		boolean isMaxValue() {
+			return "MAXVALUE".equalsIgnoreCase(description);
+		}
+	}
+
+	private record Unread(Integer senderId, Integer receiverId, int count) {
+	}
+
+	public MessageArchiveService(JdbcTemplate jdbcTemplate, ArchivedMessageRepository archivedMessageRepository,
+			ConversationRepository conversationRepository, UnreadCounterRepository unreadCounterRepository,
+			PlatformTransactionManager transactionManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.archivedMessageRepository = archivedMessageRepository;
+		this.conversationRepository = conversationRepository;
+		this.unreadCounterRepository = unreadCounterRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	public boolean hasArchive() {
+		return archivedMaxId != null;
+	}
+
+	// other nodes archive too, so the watermark is re-read rather than only set after our own runs
+	@Scheduled(fixedDelayString = "${chat.archive.watermark-refresh-ms:60000}")
+	public void refreshWatermark() {
+		archivedMaxId = archivedMessageRepository.findMaxId();
+	}
+
+	// every node runs the cron; a named lock lets one of them do the DDL. GET_LOCK belongs to the session,
+	// so it is taken and released on one pinned connection, and dies with it if the node does
+	@Scheduled(cron = "${chat.archive.cron:0 0 4 * * *}")
+	public void maintain() {
+		if (!enabled) {
+			return;
+		}
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			if (!namedLock(connection, "SELECT GET_LOCK(?, 0)")) {
+				log.info("Archive maintenance is running on another node, skipping");
+				return null;
+			}
+			try {
+				maintainPartitions();
+			} finally {
+				namedLock(connection, "SELECT RELEASE_LOCK(?)");
+			}
+			return null;
+		});
+	}
+
+	private static boolean namedLock(Connection connection, String sql) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, LOCK_NAME);
+			try (ResultSet rs = statement.executeQuery()) {
+				return rs.next() && rs.getInt(1) == 1;
+			}
+		}
+	}
+
+	private void maintainPartitions() {
+		List<Partition> partitions = partitions();
+		if (partitions.isEmpty() || partitions.get(0).name() == null) {
+			log.warn("messages is not partitioned, skipping archive maintenance");
+			return;
+		}
+		addFuturePartitions(partitions);
+		archiveColdPartitions(partitions);
+		refreshWatermark();
+	}
+
+	private List<Partition> partitions() {
+		return jdbcTemplate.query("""
+				SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS
+				WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'messages'
+				ORDER BY PARTITION_ORDINAL_POSITION
+				""", (rs, i) -> new Partition(rs.getString(1), rs.getString(2)));
+	}
+
+	// splitting pmax is only cheap while it is empty, which is why partitions are created months ahead
+	private void addFuturePartitions(List<Partition> partitions) {
+		Partition max = partitions.get(partitions.size() - 1);
+		if (!max.isMaxValue()) {
+			log.warn("messages has no MAXVALUE partition, cannot add monthly partitions");
+			return;
+		}
+		long highest = partitions.stream()
+				.filter(p -> !p.isMaxValue())
+				.mapToLong(p -> Long.parseLong(p.description()))
+				.max()
+				.orElse(Long.MIN_VALUE);
+		YearMonth last = YearMonth.now().plusMonths(monthsAhead);
+		for (YearMonth month = YearMonth.now(); !month.isAfter(last); month = month.plusMonths(1)) {
+			String upper = startOf(month.plusMonths(1));
+			if (unixTimestamp(upper) <= highest) {
+				continue;
+			}
+			jdbcTemplate.execute("ALTER TABLE messages REORGANIZE PARTITION " + max.name() + " INTO ("
+					+ "PARTITION " + month.format(PARTITION_NAME) + " VALUES LESS THAN (UNIX_TIMESTAMP('" + upper + "')), "
+					+ "PARTITION " + max.name() + " VALUES LESS THAN MAXVALUE)");
+			log.info("Added messages partition {}", month.format(PARTITION_NAME));
+		}
+	}
+
+	private void archiveColdPartitions(List<Partition> partitions) {
+		long cutoff = unixTimestamp(startOf(YearMonth.now().minusMonths(hotMonths)));
+		for (Partition partition : partitions) {
+			if (!partition.isMaxValue() && Long.parseLong(partition.description()) <= cutoff) {
+				archivePartition(partition.name());
+			}
+		}
+	}
+
+	// copies in id chunks, each its own statement, and only drops the partition once every row is
+	// in the archive; INSERT IGNORE makes a rerun after a crash pick up where it stopped
+	private void archivePartition(String name) {
+		int lastId = 0;
+		long copied = 0;
+		while (true) {
+			Integer upTo = jdbcTemplate.queryForObject("SELECT MAX(id) FROM (SELECT id FROM messages PARTITION ("
+					+ name + ") WHERE id > ? ORDER BY id LIMIT ?) chunk", Integer.class, lastId, chunkSize);
+			if (upTo == null) {
+				break;
+			}
+			copied += jdbcTemplate.update("""
+					INSERT IGNORE INTO messages_archive (id, sender_id, receiver_id, message_text, status, sent_at,
+					  receiver_seq)
+					SELECT id, sender_id, receiver_id, message_text, 'SEEN', sent_at, receiver_seq
+					FROM messages PARTITION (""" + name + ") WHERE id > ? AND id <= ?", lastId, upTo);
+			lastId = upTo;
+		}
+		Integer missing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages PARTITION (" + name + ") m "
+				+ "LEFT JOIN messages_archive a ON a.id = m.id WHERE a.id IS NULL", Integer.class);
+		if (missing != null && missing > 0) {
+			log.warn("Partition {} still has {} rows missing from the archive, keeping it", name, missing);
+			return;
+		}
+		List<Unread> unread = jdbcTemplate.query("SELECT sender_id, receiver_id, COUNT(*) FROM messages PARTITION ("
+				+ name + ") WHERE status <> 'SEEN' GROUP BY sender_id, receiver_id",
+				(rs, i) -> new Unread(rs.getInt(1), rs.getInt(2), rs.getInt(3)));
+		jdbcTemplate.execute("ALTER TABLE messages DROP PARTITION " + name);
+		// after the drop, so a rerun never subtracts twice; a crash in between leaves drift for reconciliation
+		unread.forEach(this::forgetUnread);
+		log.info("Archived partition {} ({} rows copied)", name, copied);
+	}
+
+	private void forgetUnread(Unread unread) {
+		ConversationId pair = ConversationId.of(unread.senderId(), unread.receiverId());
+		transactionTemplate.executeWithoutResult(tx -> {
+			conversationRepository.markSeen(pair.getUserLowId(), pair.getUserHighId(),
+					pair.getUserLowId().equals(unread.receiverId()), unread.count());
+			unreadCounterRepository.add(unread.receiverId(), -unread.count());
+		});
+	}
+
+	// partition bounds were written with UNIX_TIMESTAMP in the server's time zone, compare the same way
+	private long unixTimestamp(String dateTime) {
+		return jdbcTemplate.queryForObject("SELECT UNIX_TIMESTAMP(?)", Long.class, dateTime);
+	}
+
+	private static String startOf(YearMonth month) {
+		LocalDate first = month.atDay(1);
+		return first + " 00:00:00";
+	}
+}
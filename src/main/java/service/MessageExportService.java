@@ -0,0 +1,114 @@
+package service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dto.MessageDTO;
+import dto.MessageFilter;
+import repository.ArchivedMessageRepository;
+import repository.MessageRepository;
+
+// writes the filtered messages of both tiers row by row, memory stays flat whatever the table size;
+// the output is ordered by tier (the whole archive, then the hot table) and by id within each tier
+@Service
+public class MessageExportService {
+
+	public enum Format {
+		NDJSON, CSV
+	}
+
+	private static final int FLUSH_EVERY = 1000;
+
+	private final MessageRepository messageRepository;
+	private final ArchivedMessageRepository archivedMessageRepository;
+	private final ObjectMapper objectMapper;
+	private final TransactionTemplate transactionTemplate;
+
+	public MessageExportService(MessageRepository messageRepository,
+			ArchivedMessageRepository archivedMessageRepository, ObjectMapper objectMapper,
+			PlatformTransactionManager transactionManager) {
+		this.messageRepository = messageRepository;
+		this.archivedMessageRepository = archivedMessageRepository;
+		this.objectMapper = objectMapper;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+	}
+
+	// runs on the async response thread, so the transaction is opened here rather than by the caller
+	public void export(MessageFilter filter, Format format, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		if (format == Format.CSV) {
+			writer.write("id,sender_id,receiver_id,status,sent_at,message_text\n");
+		}
+		try {
+			transactionTemplate.executeWithoutResult(tx -> {
+				int[] written = {0};
+				// one streaming cursor open at a time, which is all MySQL allows per connection, so the tiers
+				// are written one after the other rather than merged. Ids come from per-node blocks and are
+				// not in send order, so neither ids nor sent_at are sorted across the two tiers
+				List<Supplier<Stream<MessageDTO>>> tiers = List.of(
+						() -> archivedMessageRepository.streamMessages(filter.getSenderId(), filter.getReceiverId(),
+								filter.getFrom(), filter.getTo(), filter.getStatus()),
+						() -> messageRepository.streamMessages(filter.getSenderId(), filter.getReceiverId(),
+								filter.getFrom(), filter.getTo(), filter.getStatus()));
+				for (Supplier<Stream<MessageDTO>> tier : tiers) {
+					try (Stream<MessageDTO> messages = tier.get()) {
+						messages.forEach(message -> {
+							// rows are projected DTOs, nothing accumulates in the persistence context
+							writeRow(writer, message, format);
+							if (++written[0] % FLUSH_EVERY == 0) {
+								flush(writer);
+							}
+						});
+					}
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.flush();
+	}
+
+	private void writeRow(Writer writer, MessageDTO dto, Format format) {
+		try {
+			if (format == Format.NDJSON) {
+				writer.write(objectMapper.writeValueAsString(dto));
+			} else {
+				writer.write(dto.getId() + "," + dto.getSenderId() + "," + dto.getReceiverId() + ","
+						+ dto.getStatus() + "," + dto.getSentAt() + "," + csv(dto.getMessageText()));
+			}
+			writer.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void flush(Writer writer) {
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String csv(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
@@ -0,0 +1,50 @@
+package service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// pooled hi/lo allocator over messages_seq; ids are known before the insert so a
+// message can be fanned out first and written later in a JDBC batch
+@Service
+public class MessageIdAllocator {
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+
+	@Value("${chat.persistence.id-block-size:100}")
+	private int blockSize;
+
+	// not synchronized: a virtual thread blocked on the refill's JDBC call would pin its carrier
+	private final ReentrantLock lock = new ReentrantLock();
+	private long next;
+	private long limit;
+
+	public MessageIdAllocator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	public Integer nextId() {
+		lock.lock();
+		try {
+			if (next >= limit) {
+				// LAST_INSERT_ID is per connection, both statements have to share one transaction
+				Long end = transactionTemplate.execute(tx -> {
+					jdbcTemplate.update("UPDATE messages_seq SET next_val = LAST_INSERT_ID(next_val + ?)", blockSize);
+					return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+				});
+				next = end - blockSize;
+				limit = end;
+			}
+			return Math.toIntExact(next++);
+		} finally {
+			lock.unlock();
+		}
+	}
+}
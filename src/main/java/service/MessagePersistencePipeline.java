@@ -0,0 +1,182 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import entities.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Decides when a chat message is durable relative to its fan-out.
+// sync: persisted before sendMessage returns (the original behaviour).
+// write-behind: id assigned up front, message queued and flushed in batches by a single writer thread.
+@Service
+public class MessagePersistencePipeline implements SmartLifecycle {
+	private static final Logger log = LoggerFactory.getLogger(MessagePersistencePipeline.class);
+
+	public enum Mode {
+		SYNC, WRITE_BEHIND
+	}
+
+	private final MessageService messageService;
+	private final ReadYourWritesGuard readYourWritesGuard;
+	private final Mode mode;
+	private final int batchSize;
+	private final long flushIntervalMs;
+	private final long offerTimeoutMs;
+	private final BlockingQueue<Message> queue;
+	private final Counter persisted;
+	private final Counter dropped;
+
+	private volatile boolean running;
+	private Thread writer;
+
+	public MessagePersistencePipeline(MessageService messageService, ReadYourWritesGuard readYourWritesGuard,
+			@Value("${chat.persistence.mode:write-behind}") String mode,
+			@Value("${chat.persistence.queue-capacity:10000}") int queueCapacity,
+			@Value("${chat.persistence.batch-size:50}") int batchSize,
+			@Value("${chat.persistence.flush-interval-ms:50}") long flushIntervalMs,
+			@Value("${chat.persistence.offer-timeout-ms:100}") long offerTimeoutMs,
+			MeterRegistry meterRegistry) {
+		this.messageService = messageService;
+		this.readYourWritesGuard = readYourWritesGuard;
+		this.mode = Mode.valueOf(mode.toUpperCase().replace('-', '_'));
+		this.batchSize = batchSize;
+		this.flushIntervalMs = flushIntervalMs;
+		this.offerTimeoutMs = offerTimeoutMs;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.persisted = Counter.builder("chat.messages.persisted").register(meterRegistry);
+		this.dropped = Counter.builder("chat.messages.dropped").register(meterRegistry);
+		Gauge.builder("chat.persistence.queue", queue, BlockingQueue::size).register(meterRegistry);
+	}
+
+	// returns the message with its id set; in write-behind mode it may not be committed yet
+	public Message submit(Message message) {
+		// before any transaction opens: a block refill takes a pool connection of its own
+		messageService.assignId(message);
+		if (mode == Mode.SYNC) {
+			Message saved = messageService.saveMessage(message);
+			persisted.increment();
+			return saved;
+		}
+		try {
+			// backpressure: wait briefly for the writer, then refuse instead of growing without bound
+			if (!queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+				throw new IllegalStateException("Message queue is full, try again shortly");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while queueing message", e);
+		}
+		// the message is fanned out now but committed only at the next flush: pin both users to the primary
+		// from here, or a reload in between reads a replica that cannot have it yet. The flush records again,
+		// so a deep queue does not let the window lapse before the commit
+		readYourWritesGuard.recordWrite(message.getSenderId());
+		readYourWritesGuard.recordWrite(message.getReceiverId());
+		return message;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	@Override
+	public void start() {
+		if (mode == Mode.SYNC) {
+			return;
+		}
+		running = true;
+		writer = new Thread(this::drainLoop, "message-write-behind");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		if (writer == null) {
+			return;
+		}
+		writer.interrupt();
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(30));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	// stop after the messaging infrastructure so frames accepted during shutdown are still flushed
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE - 1000;
+	}
+
+	private void drainLoop() {
+		List<Message> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				Message first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+				while (batch.size() < batchSize) {
+					long remaining = deadline - System.nanoTime();
+					Message next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				// shutdown: fall through, flush what we hold and keep draining until the queue is empty
+				queue.drainTo(batch);
+			}
+			flush(batch);
+			batch.clear();
+		}
+	}
+
+	private void flush(List<Message> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			messageService.saveMessages(batch);
+			persisted.increment(batch.size());
+		} catch (RuntimeException e) {
+			// isolate the failing row(s) so one bad message does not lose the whole batch
+			log.warn("Batch of {} messages failed, retrying one by one", batch.size(), e);
+			for (Message message : batch) {
+				try {
+					messageService.saveMessages(List.of(message));
+					persisted.increment();
+				} catch (RuntimeException single) {
+					dropped.increment();
+					log.error("Dropping message {} from {} to {}", message.getId(),
+							message.getSenderId(), message.getReceiverId(), single);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import dto.MessageDTO;
+import dto.MessageSearchHitDTO;
+import dto.MessageSearchResultDTO;
+import entities.ConversationId;
+import entities.Message;
+import repository.ArchivedMessageRepository;
+import repository.MessageRepository;
+
+// Lucene index over message text, kept next to the app instead of LIKE '%...%' scans on MySQL.
+// Fed after commit from MessagesSavedEvent; rebuild() repopulates it from the messages table.
+// New documents become searchable on the next refresh, and are durable on the next commit.
+// The index is local to the node: with chat.broker.mode=relay each node only sees the messages saved
+// through it, so search is only complete on a single node until the index moves to a shared service.
+@Service
+public class MessageSearchIndex implements ApplicationRunner, DisposableBean {
+	private static final Logger log = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+	private static final String ID = "id";
+	private static final String PARTICIPANT = "participant";
+	private static final String PAIR = "pair";
+	private static final String SENDER_ID = "sender_id";
+	private static final String RECEIVER_ID = "receiver_id";
+	private static final String SENT_AT = "sent_at";
+	private static final String TEXT = "text";
+	private static final String CURRENT = "CURRENT";
+
+	private final MessageRepository messageRepository;
+	private final ArchivedMessageRepository archivedMessageRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final int defaultPageSize;
+	private final int maxPageSize;
+	private final int maxResults;
+
+	private final Analyzer analyzer = new StandardAnalyzer();
+	private final Path indexRoot;
+	// index() and searches share the read lock; swapping in a rebuilt generation takes the write lock
+	private final ReadWriteLock generations = new ReentrantReadWriteLock();
+	private Generation live;
+	// set while rebuild() runs, so messages committed meanwhile also land in the new generation
+	private Generation building;
+
+	@Value("${chat.search.rebuild-if-empty:true}")
+	private boolean rebuildIfEmpty;
+
+	public MessageSearchIndex(MessageRepository messageRepository, ArchivedMessageRepository archivedMessageRepository,
+			PlatformTransactionManager transactionManager,
+			@Value("${chat.search.index-dir:data/message-index}") String indexDir,
+			@Value("${chat.search.page-size:20}") int defaultPageSize,
+			@Value("${chat.search.max-page-size:100}") int maxPageSize,
+			@Value("${chat.search.max-results:1000}") int maxResults) throws IOException {
+		this.messageRepository = messageRepository;
+		this.archivedMessageRepository = archivedMessageRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.defaultPageSize = defaultPageSize;
+		this.maxPageSize = maxPageSize;
+		this.maxResults = maxResults;
+		this.indexRoot = Path.of(indexDir);
+		Files.createDirectories(indexRoot);
+		Path current = indexRoot.resolve(CURRENT);
+		String name = Files.exists(current) ? Files.readString(current).trim() : "gen-0";
+		this.live = open(name);
+		// a rebuild that died before its swap leaves its generation behind
+		try (Stream<Path> dirs = Files.list(indexRoot)) {
+			for (Path dir : dirs.filter(d -> Files.isDirectory(d) && !d.getFileName().toString().equals(name)).toList()) {
+				delete(dir);
+			}
+		}
+		writeCurrent(name);
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (rebuildIfEmpty && live.writer.getDocStats().numDocs == 0) {
+			log.info("Message search index is empty, rebuilt {} messages", rebuild());
+		}
+	}
+
+	// only committed rows are indexed; a failure here must not fail the (already committed) save
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onMessagesSaved(MessagesSavedEvent event) {
+		try {
+			for (Message message : event.messages()) {
+				index(message.getId(), message.getSenderId(), message.getReceiverId(), message.getSentAt(),
+						message.getMessageText());
+			}
+		} catch (IOException e) {
+			log.error("Failed to index {} messages, run a rebuild to recover", event.messages().size(), e);
+		}
+	}
+
+	// updateDocument keyed on id, so rows seen both here and by the listener are indexed once
+	public void index(Integer id, Integer senderId, Integer receiverId, LocalDateTime sentAt, String text)
+			throws IOException {
+		generations.readLock().lock();
+		try {
+			index(live, id, senderId, receiverId, sentAt, text);
+			if (building != null) {
+				index(building, id, senderId, receiverId, sentAt, text);
+			}
+		} finally {
+			generations.readLock().unlock();
+		}
+	}
+
+	private void index(Generation generation, Integer id, Integer senderId, Integer receiverId, LocalDateTime sentAt,
+			String text) throws IOException {
+		ConversationId pair = ConversationId.of(senderId, receiverId);
+		Document doc = new Document();
+		doc.add(new StringField(ID, id.toString(), Field.Store.YES));
+		doc.add(new StringField(PARTICIPANT, senderId.toString(), Field.Store.NO));
+		doc.add(new StringField(PARTICIPANT, receiverId.toString(), Field.Store.NO));
+		doc.add(new StringField(PAIR, pair.getUserLowId() + "-" + pair.getUserHighId(), Field.Store.NO));
+		doc.add(new StoredField(SENDER_ID, senderId));
+		doc.add(new StoredField(RECEIVER_ID, receiverId));
+		doc.add(new StoredField(SENT_AT, sentAt.toString()));
+		doc.add(new TextField(TEXT, text, Field.Store.YES));
+		generation.writer.updateDocument(new Term(ID, id.toString()), doc);
+	}
+
+	// Builds a new generation next to the live one and swaps it in when done, so searches keep using
+	// the old index meanwhile instead of seeing it emptied. Rows committed while the tables are streamed
+	// reach the new generation through index().
+	public synchronized int rebuild() {
+		Generation fresh;
+		try {
+			fresh = open("gen-" + System.currentTimeMillis());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		generations.writeLock().lock();
+		building = fresh;
+		generations.writeLock().unlock();
+		try {
+			int[] indexed = {0};
+			transactionTemplate.executeWithoutResult(tx -> {
+				// both tiers, one streaming cursor at a time
+				List<Supplier<Stream<MessageDTO>>> tiers = List.of(
+						() -> archivedMessageRepository.streamMessages(null, null, null, null, null),
+						() -> messageRepository.streamMessages(null, null, null, null, null));
+				for (Supplier<Stream<MessageDTO>> tier : tiers) {
+					try (Stream<MessageDTO> rows = tier.get()) {
+						rows.forEach(row -> {
+							try {
+								index(fresh, row.getId(), row.getSenderId(), row.getReceiverId(), row.getSentAt(),
+										row.getMessageText());
+							} catch (IOException e) {
+								throw new UncheckedIOException(e);
+							}
+							indexed[0]++;
+						});
+					}
+				}
+			});
+			fresh.writer.commit();
+			fresh.searcherManager.maybeRefresh();
+			writeCurrent(fresh.name);
+			Generation old;
+			generations.writeLock().lock();
+			try {
+				old = live;
+				live = fresh;
+				building = null;
+			} finally {
+				generations.writeLock().unlock();
+			}
+			old.close();
+			delete(old.path);
+			return indexed[0];
+		} catch (IOException | RuntimeException e) {
+			generations.writeLock().lock();
+			building = null;
+			generations.writeLock().unlock();
+			try {
+				fresh.close();
+				delete(fresh.path);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+		}
+	}
+
+	// ranked hits from the user's own conversations, optionally narrowed to one partner
+	public MessageSearchResultDTO search(Integer userId, String queryText, Integer partnerId, Integer page,
+			Integer size) {
+		int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+		int pageNumber = page == null || page < 0 ? 0 : page;
+		int from = pageNumber * pageSize;
+		if (from >= maxResults) {
+			throw new IllegalArgumentException("Results are limited to the first " + maxResults + " hits");
+		}
+
+		SimpleQueryParser parser = new SimpleQueryParser(analyzer, TEXT);
+		parser.setDefaultOperator(BooleanClause.Occur.MUST);
+		Query textQuery = parser.parse(queryText);
+		BooleanQuery.Builder query = new BooleanQuery.Builder()
+				.add(textQuery, BooleanClause.Occur.MUST)
+				.add(new TermQuery(new Term(PARTICIPANT, userId.toString())), BooleanClause.Occur.FILTER);
+		if (partnerId != null) {
+			ConversationId pair = ConversationId.of(userId, partnerId);
+			query.add(new TermQuery(new Term(PAIR, pair.getUserLowId() + "-" + pair.getUserHighId())),
+					BooleanClause.Occur.FILTER);
+		}
+		Query built = query.build();
+
+		generations.readLock().lock();
+		try {
+			SearcherManager searcherManager = live.searcherManager;
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				TopDocs top = searcher.search(built, Math.min(from + pageSize, maxResults));
+				ScoreDoc[] pageDocs = from >= top.scoreDocs.length
+						? new ScoreDoc[0]
+						: Arrays.copyOfRange(top.scoreDocs, from, top.scoreDocs.length);
+				String[] highlights = highlighter(searcher)
+						.highlight(TEXT, textQuery, new TopDocs(top.totalHits, pageDocs), 1);
+				List<MessageSearchHitDTO> hits = new ArrayList<>(pageDocs.length);
+				for (int i = 0; i < pageDocs.length; i++) {
+					Document doc = searcher.storedFields().document(pageDocs[i].doc);
+					hits.add(new MessageSearchHitDTO(
+							Integer.valueOf(doc.get(ID)),
+							doc.getField(SENDER_ID).numericValue().intValue(),
+							doc.getField(RECEIVER_ID).numericValue().intValue(),
+							LocalDateTime.parse(doc.get(SENT_AT)),
+							pageDocs[i].score,
+							highlights[i]));
+				}
+				return new MessageSearchResultDTO(hits, top.totalHits.value, pageNumber, pageSize);
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			generations.readLock().unlock();
+		}
+	}
+
+	// escape=true: message text is user input and the highlight is meant to be rendered as HTML
+	private UnifiedHighlighter highlighter(IndexSearcher searcher) {
+		return UnifiedHighlighter.builder(searcher, analyzer)
+				.withFormatter(new DefaultPassageFormatter("<mark>", "</mark>", "… ", true))
+				.build();
+	}
+
+	@Scheduled(fixedDelayString = "${chat.search.refresh-interval-ms:1000}")
+	public void refresh() throws IOException {
+		generations.readLock().lock();
+		try {
+			live.searcherManager.maybeRefresh();
+		} finally {
+			generations.readLock().unlock();
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${chat.search.commit-interval-ms:30000}")
+	public void commit() throws IOException {
+		generations.readLock().lock();
+		try {
+			if (live.writer.hasUncommittedChanges()) {
+				live.writer.commit();
+			}
+		} finally {
+			generations.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void destroy() throws IOException {
+		generations.writeLock().lock();
+		try {
+			live.close();
+		} finally {
+			generations.writeLock().unlock();
+		}
+	}
+
+	private Generation open(String name) throws IOException {
+		Path path = indexRoot.resolve(name);
+		Directory directory = FSDirectory.open(path);
+		IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+		return new Generation(name, path, directory, writer, new SearcherManager(writer, null));
+	}
+
+	// the name of the live generation, replaced atomically so a crash leaves either the old or the new one
+	private void writeCurrent(String name) throws IOException {
+		Path tmp = indexRoot.resolve(CURRENT + ".tmp");
+		Files.writeString(tmp, name);
+		Files.move(tmp, indexRoot.resolve(CURRENT), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void delete(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	// one index directory under chat.search.index-dir
+	private record Generation(String name, Path path, Directory directory, IndexWriter writer,
+			SearcherManager searcherManager) {
+		void close() throws IOException {
+			searcherManager.close();
+			writer.close();
+			directory.close();
+		}
+	}
+}
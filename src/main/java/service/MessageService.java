@@ -1,46 +1,317 @@
 package service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import dto.AdminMessageDTO;
+import dto.ConversationDTO;
+import dto.MessageDTO;
+import dto.MessageFilter;
+import dto.SyncBatchDTO;
+import dto.SyncMessageDTO;
+import entities.ConversationId;
 import entities.Message;
 import entities.Message.Status;
+import entities.UnreadCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import repository.ArchivedMessageRepository;
+import repository.ConversationRepository;
 import repository.MessageRepository;
+import repository.ReceiverSequenceRepository;
+import repository.UnreadCounterRepository;
 
 @Service
 public class MessageService {
     private final MessageRepository messageRepository;
 
-    public MessageService(MessageRepository messageRepository) {
+    @Value("${chat.history.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${chat.history.max-page-size:200}")
+    private int maxPageSize;
+
+    private final ConversationRepository conversationRepository;
+    private final MessageIdAllocator messageIdAllocator;
+    private final EntityManager entityManager;
+    private final UnreadCounterRepository unreadCounterRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final MessageArchiveService messageArchiveService;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final ReceiverSequenceRepository receiverSequenceRepository;
+    private final Timer latestPageTimer;
+    private final Timer olderPageTimer;
+
+    private static final int PREVIEW_LENGTH = 255;
+    private static final Comparator<Message> LATEST_FIRST = Comparator.comparing(Message::getSentAt)
+            .thenComparing(Message::getId).reversed();
+
+    public MessageService(MessageRepository messageRepository, ConversationRepository conversationRepository,
+                          MessageIdAllocator messageIdAllocator, EntityManager entityManager,
+                          UnreadCounterRepository unreadCounterRepository,
+                          ApplicationEventPublisher eventPublisher,
+                          ArchivedMessageRepository archivedMessageRepository,
+                          MessageArchiveService messageArchiveService,
+                          ReadYourWritesGuard readYourWritesGuard,
+                          ReceiverSequenceRepository receiverSequenceRepository,
+                          MeterRegistry meterRegistry) {
         this.messageRepository = messageRepository;
+        this.conversationRepository = conversationRepository;
+        this.messageIdAllocator = messageIdAllocator;
+        this.entityManager = entityManager;
+        this.unreadCounterRepository = unreadCounterRepository;
+        this.eventPublisher = eventPublisher;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.messageArchiveService = messageArchiveService;
+        this.readYourWritesGuard = readYourWritesGuard;
+        this.receiverSequenceRepository = receiverSequenceRepository;
+        // first page (chat open) and scroll-back are timed apart, they hit different plans
+        this.latestPageTimer = Timer.builder("chat.history").tag("page", "latest").register(meterRegistry);
+        this.olderPageTimer = Timer.builder("chat.history").tag("page", "older").register(meterRegistry);
     }
 
+    @Transactional
     public Message saveMessage(Message message) {
-        return messageRepository.save(message);
+        requireId(message);
+        assignReceiverSeqs(List.of(message));
+        // persist rather than save: the id is already set, save would merge and SELECT first
+        entityManager.persist(message);
+        ConversationId pair = ConversationId.of(message.getSenderId(), message.getReceiverId());
+        boolean receiverIsLow = pair.getUserLowId().equals(message.getReceiverId());
+        touchConversation(pair, message, receiverIsLow ? 1 : 0, receiverIsLow ? 0 : 1);
+        unreadCounterRepository.add(message.getReceiverId(), 1);
+        readYourWritesGuard.recordWrite(message.getSenderId());
+        readYourWritesGuard.recordWrite(message.getReceiverId());
+        eventPublisher.publishEvent(new MessagesSavedEvent(List.of(message)));
+        return message;
+    }
+
+    // write-behind flush; inserts go out as one JDBC batch and each pair is upserted once
+    @Transactional
+    public void saveMessages(List<Message> messages) {
+        Map<ConversationId, Message> lastPerPair = new HashMap<>();
+        Map<ConversationId, int[]> unreadPerPair = new HashMap<>();
+        Map<Integer, Integer> unreadPerReceiver = new HashMap<>();
+        messages.forEach(MessageService::requireId);
+        assignReceiverSeqs(messages);
+        for (Message message : messages) {
+            entityManager.persist(message);
+            ConversationId pair = ConversationId.of(message.getSenderId(), message.getReceiverId());
+            // latest by (sentAt, id) as in upsertLastMessage, ids are not in send order across nodes
+            lastPerPair.merge(pair, message, (a, b) -> LATEST_FIRST.compare(a, b) <= 0 ? a : b);
+            // [unread for low side, unread for high side]; the receiver's side, so a note to oneself is
+            // unread_low as in rebuildFromMessages, getUnreadFor and markSeen
+            int[] unread = unreadPerPair.computeIfAbsent(pair, p -> new int[2]);
+            unread[pair.getUserLowId().equals(message.getReceiverId()) ? 0 : 1]++;
+            unreadPerReceiver.merge(message.getReceiverId(), 1, Integer::sum);
+        }
+        entityManager.flush();
+        lastPerPair.forEach((pair, last) -> {
+            int[] unread = unreadPerPair.get(pair);
+            touchConversation(pair, last, unread[0], unread[1]);
+        });
+        unreadPerReceiver.forEach(unreadCounterRepository::add);
+        for (Message message : messages) {
+            readYourWritesGuard.recordWrite(message.getSenderId());
+            readYourWritesGuard.recordWrite(message.getReceiverId());
+        }
+        eventPublisher.publishEvent(new MessagesSavedEvent(List.copyOf(messages)));
+    }
+
+    // call outside any transaction: a block refill runs in a REQUIRES_NEW transaction, which inside
+    // saveMessage would wait for a second pool connection while already holding one
+    public void assignId(Message message) {
+        if (message.getId() == null) {
+            message.setId(messageIdAllocator.nextId());
+        }
+    }
+
+    private static void requireId(Message message) {
+        if (message.getId() == null) {
+            throw new IllegalArgumentException("Message id must be assigned before the save transaction");
+        }
+    }
+
+    // Numbers each receiver's messages in commit order for sync. advance() keeps the receiver's row locked
+    // until this transaction ends, so a later number can only commit after every earlier one, wherever
+    // the ids came from. Receivers are locked in ascending order so concurrent batches cannot deadlock here.
+    private void assignReceiverSeqs(List<Message> messages) {
+        Map<Integer, List<Message>> byReceiver = new TreeMap<>();
+        for (Message message : messages) {
+            byReceiver.computeIfAbsent(message.getReceiverId(), id -> new ArrayList<>()).add(message);
+        }
+        byReceiver.forEach((receiverId, received) -> {
+            receiverSequenceRepository.advance(receiverId, received.size());
+            long seq = receiverSequenceRepository.findLastSeq(receiverId) - received.size();
+            for (Message message : received) {
+                message.setReceiverSeq(++seq);
+            }
+        });
+    }
+
+    private void touchConversation(ConversationId pair, Message last, int unreadLow, int unreadHigh) {
+        conversationRepository.upsertLastMessage(
+                pair.getUserLowId(),
+                pair.getUserHighId(),
+                last.getId(),
+                last.getSenderId(),
+                preview(last.getMessageText()),
+                last.getSentAt(),
+                unreadLow,
+                unreadHigh);
+    }
+
+    private static String preview(String text) {
+        if (text.length() <= PREVIEW_LENGTH) {
+            return text;
+        }
+        int end = PREVIEW_LENGTH;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    // returns one page in ascending order; the first element is the cursor for the next (older) page
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getChatHistory(Integer senderId, Integer receiverId,
+                                           LocalDateTime beforeSentAt, Integer beforeId, Integer size) {
+        Timer timer = beforeSentAt == null || beforeId == null ? latestPageTimer : olderPageTimer;
+        return timer.record(() -> loadChatPage(senderId, receiverId, beforeSentAt, beforeId, size));
+    }
+
+    private List<MessageDTO> loadChatPage(Integer senderId, Integer receiverId,
+                                          LocalDateTime beforeSentAt, Integer beforeId, Integer size) {
+        int pageSize = clampPageSize(size);
+        List<MessageDTO> result = new ArrayList<>();
+        if (beforeSentAt == null || beforeId == null) {
+            result.addAll(messageRepository.findLatestChatPage(senderId, receiverId, Limit.of(pageSize)));
+        } else {
+            result.addAll(messageRepository.findChatPageBefore(senderId, receiverId, beforeSentAt, beforeId,
+                    Limit.of(pageSize)));
+        }
+        // a short page means the hot table ran out; older rows continue in the archive on the same cursor
+        if (result.size() < pageSize && messageArchiveService.hasArchive()) {
+            Limit rest = Limit.of(pageSize - result.size());
+            if (!result.isEmpty()) {
+                MessageDTO oldest = result.get(result.size() - 1);
+                result.addAll(archivedMessageRepository.findChatPageBefore(senderId, receiverId,
+                        oldest.getSentAt(), oldest.getId(), rest));
+            } else if (beforeSentAt == null || beforeId == null) {
+                result.addAll(archivedMessageRepository.findLatestChatPage(senderId, receiverId, rest));
+            } else {
+                result.addAll(archivedMessageRepository.findChatPageBefore(senderId, receiverId,
+                        beforeSentAt, beforeId, rest));
+            }
+        }
+        Collections.reverse(result);
+        return result;
     }
 
-    public List<Message> getChatHistory(Integer senderId, Integer receiverId) {
-        return messageRepository.findChatHistory(senderId, receiverId);
+    // messages received after the client's cursor, across all conversations in receiver_seq (commit) order.
+    // Live frames carry no seq, so a client keeps the cursor of its last sync batch and drops ids it already has.
+    @Transactional(readOnly = true)
+    public SyncBatchDTO getMissedMessages(Integer receiverId, Long afterSeq, int batchSize) {
+        long after = afterSeq == null ? 0 : afterSeq;
+        // one extra row tells us whether another batch follows
+        Limit limit = Limit.of(batchSize + 1);
+        List<SyncMessageDTO> rows = new ArrayList<>(messageRepository.findReceivedAfter(receiverId, after, limit));
+        // partitions are archived by sent_at, which does not follow seq exactly, so both tiers are read and merged
+        if (messageArchiveService.hasArchive()) {
+            rows.addAll(archivedMessageRepository.findReceivedAfter(receiverId, after, limit));
+            rows.sort(Comparator.comparing(SyncMessageDTO::getSeq));
+        }
+        boolean hasMore = rows.size() > batchSize;
+        List<SyncMessageDTO> batch = hasMore ? new ArrayList<>(rows.subList(0, batchSize)) : rows;
+        Long cursor = batch.isEmpty() ? afterSeq : batch.get(batch.size() - 1).getSeq();
+        return new SyncBatchDTO(batch, cursor, hasMore);
+    }
+
+    private int clampPageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
     }
 
     public List<Message> getAllMessagesForUser(Integer userId) {  // Changed from Long to Integer
         return messageRepository.findAllMessagesForUser(userId);
     }
 
-    public void markMessageAsSeen(Integer messageId) {
-        Message message = messageRepository.findById(messageId)
-            .orElseThrow(() -> new RuntimeException("Message not found"));
-        message.setStatus(Status.SEEN);
-        messageRepository.save(message);
+    // never moves a message backwards: SEEN only overwrites SENT/DELIVERED, DELIVERED only SENT
+    @Transactional
+    public int markUpTo(Integer senderId, Integer receiverId, LocalDateTime upToSentAt, Integer upToMessageId,
+            Status status) {
+        List<Status> from = status == Status.SEEN
+                ? List.of(Status.SENT, Status.DELIVERED)
+                : List.of(Status.SENT);
+        int updated = messageRepository.updateStatusUpTo(senderId, receiverId, upToSentAt, upToMessageId, status,
+                from);
+        readYourWritesGuard.recordWrite(senderId);
+        readYourWritesGuard.recordWrite(receiverId);
+        if (status == Status.SEEN && updated > 0) {
+            // only rows that actually turned SEEN count, so repeated receipts never double-decrement
+            ConversationId pair = ConversationId.of(senderId, receiverId);
+            conversationRepository.markSeen(pair.getUserLowId(), pair.getUserHighId(),
+                    pair.getUserLowId().equals(receiverId), updated);
+            unreadCounterRepository.add(receiverId, -updated);
+        }
+        return updated;
+    }
+
+    // badge refresh: primary-key lookups, no scan over messages
+    @Transactional(readOnly = true)
+    public int getUnreadTotal(Integer userId) {
+        return unreadCounterRepository.findById(userId).map(UnreadCounter::getTotal).orElse(0);
+    }
+
+    @Transactional(readOnly = true)
+    public int getUnreadCount(Integer userId, Integer partnerId) {
+        return conversationRepository.findById(ConversationId.of(userId, partnerId))
+                .map(conversation -> conversation.getUnreadFor(userId))
+                .orElse(0);
     }
     
-    public List<Message> getLatestChats(Integer userId) {
-        return messageRepository.findLatestMessagePerChatPartner(userId);
+    // Conversation has no associations to initialise; read-only keeps Hibernate from snapshotting the rows
+    @Transactional(readOnly = true)
+    public List<ConversationDTO> getLatestChats(Integer userId) {
+        return conversationRepository.findInbox(userId).stream()
+                .map(conversation -> ConversationDTO.from(conversation, userId))
+                .collect(Collectors.toList());
     }
     
     // for admin 
-    public List<Message> getAllMessages(){
-    	return messageRepository.findAllMessages();
+    @Transactional(readOnly = true)
+    public List<AdminMessageDTO> getAllMessages(MessageFilter filter, Integer beforeId, Integer size){
+    	int pageSize = clampPageSize(size);
+    	List<AdminMessageDTO> page = new ArrayList<>(messageRepository.browseMessages(filter.getSenderId(),
+    			filter.getReceiverId(), filter.getFrom(), filter.getTo(), filter.getStatus(), beforeId,
+    			Limit.of(pageSize)));
+    	// partitions are archived by sent_at but ids come from per-node blocks, so an archived id can be above
+    	// hot ones: both tiers are read on the same cursor and merged
+    	if (messageArchiveService.hasArchive()) {
+    		page.addAll(archivedMessageRepository.browseMessages(filter.getSenderId(), filter.getReceiverId(),
+    				filter.getFrom(), filter.getTo(), filter.getStatus(), beforeId, Limit.of(pageSize)));
+    		page.sort(Comparator.comparing(AdminMessageDTO::getId).reversed());
+    		if (page.size() > pageSize) {
+    			page = new ArrayList<>(page.subList(0, pageSize));
+    		}
+    	}
+    	return page;
     }
 }
\ No newline at end of file
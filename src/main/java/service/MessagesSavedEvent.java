@@ -0,0 +1,10 @@
+package service;
+
+import java.util.List;
+
+import entities.Message;
+
+// published by MessageService inside the saving transaction; listeners that must not see rolled-back
+// rows should use @TransactionalEventListener
+public record MessagesSavedEvent(List<Message> messages) {
+}
@@ -0,0 +1,109 @@
+package service;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import config.ChatDestinations;
+import dto.PresenceDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Who is connected, driven by STOMP session events. All state lives in ConcurrentHashMaps so
+// connects and disconnects only contend per bin; changes are coalesced and pushed on a timer.
+// The maps only know this node's sessions. With chat.broker.mode=relay the /topic/presence diffs of
+// every node reach every client, but the REST lookups answer for local sessions only, and a user
+// connected to two nodes shows as offline once either of them disconnects.
+@Service
+public class PresenceService {
+	private final SimpMessagingTemplate messagingTemplate;
+
+	// sessionId -> userId; also dedupes the disconnect event Spring may publish twice
+	private final Map<String, Long> sessions = new ConcurrentHashMap<>();
+	// userId -> open sessions (one per device/tab)
+	private final Map<Long, Integer> sessionCounts = new ConcurrentHashMap<>();
+	private final Map<Long, Instant> lastSeen = new ConcurrentHashMap<>();
+	// users whose online state changed since the last flush
+	private final Map<Long, Boolean> pending = new ConcurrentHashMap<>();
+
+	public PresenceService(SimpMessagingTemplate messagingTemplate, MeterRegistry meterRegistry) {
+		this.messagingTemplate = messagingTemplate;
+		Gauge.builder("presence.sessions", sessions, Map::size).register(meterRegistry);
+		Gauge.builder("presence.users.online", sessionCounts, Map::size).register(meterRegistry);
+	}
+
+	@EventListener
+	public void onConnect(SessionConnectEvent event) {
+		Long userId = userId(event.getUser());
+		String sessionId = (String) event.getMessage().getHeaders().get("simpSessionId");
+		if (userId == null || sessionId == null || sessions.putIfAbsent(sessionId, userId) != null) {
+			return;
+		}
+		if (sessionCounts.merge(userId, 1, Integer::sum) == 1) {
+			pending.put(userId, Boolean.TRUE);
+		}
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		Long userId = sessions.remove(event.getSessionId());
+		if (userId == null) {
+			return;
+		}
+		Integer remaining = sessionCounts.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null);
+		if (remaining == null) {
+			lastSeen.put(userId, Instant.now());
+			pending.put(userId, Boolean.TRUE);
+		}
+	}
+
+	// one diff per interval instead of one frame per connect/disconnect
+	@Scheduled(fixedDelayString = "${chat.presence.flush-interval-ms:1000}")
+	public void flush() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		List<PresenceDTO> changes = new ArrayList<>();
+		for (Long userId : pending.keySet()) {
+			pending.remove(userId);
+			// read the state now, so a user who flapped within the interval is reported once, as they are
+			changes.add(status(userId));
+		}
+		messagingTemplate.convertAndSend(ChatDestinations.PRESENCE, changes);
+	}
+
+	public List<PresenceDTO> getOnlineUsers() {
+		List<PresenceDTO> online = new ArrayList<>(sessionCounts.size());
+		for (Long userId : sessionCounts.keySet()) {
+			online.add(new PresenceDTO(userId, true, null));
+		}
+		return online;
+	}
+
+	public PresenceDTO status(Long userId) {
+		boolean online = sessionCounts.containsKey(userId);
+		return new PresenceDTO(userId, online, online ? null : lastSeen.get(userId));
+	}
+
+	public boolean isOnline(Long userId) {
+		return sessionCounts.containsKey(userId);
+	}
+
+	private static Long userId(Principal user) {
+		if (user instanceof Authentication auth && auth.getPrincipal() instanceof Long id) {
+			return id;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,48 @@
+package service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Replicas trail the primary, so a user who just wrote could read their own change as missing.
+// Writers are remembered for read-your-writes-window; requests from them are pinned to the primary
+// for their duration. Node-local: a read landing on another node within the window can still lag.
+@Service
+public class ReadYourWritesGuard {
+	private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+	private final Cache<Integer, Boolean> recentWriters;
+
+	public ReadYourWritesGuard(@Value("${chat.datasource.read-your-writes-window:5s}") Duration window) {
+		this.recentWriters = Caffeine.newBuilder()
+				.expireAfterWrite(window)
+				.maximumSize(100_000)
+				.build();
+	}
+
+	public void recordWrite(Integer userId) {
+		if (userId != null) {
+			recentWriters.put(userId, Boolean.TRUE);
+		}
+	}
+
+	public boolean wroteRecently(Integer userId) {
+		return userId != null && recentWriters.getIfPresent(userId) != null;
+	}
+
+	public void pin() {
+		PINNED.set(Boolean.TRUE);
+	}
+
+	public void unpin() {
+		PINNED.remove();
+	}
+
+	public boolean isPinned() {
+		return PINNED.get() != null;
+	}
+}
@@ -0,0 +1,138 @@
+package service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import config.ChatDestinations;
+import dto.ReceiptDTO;
+import entities.Message;
+import entities.Message.Status;
+
+// Coalesces receipts per (sender, reader) so a burst of "seen" frames becomes one UPDATE and one
+// event to the sender per flush interval.
+// In write-behind mode a receipt can cover messages that are still queued for insert, and its UPDATE
+// misses them. Applied receipts are therefore remembered for a while and queued again when a message
+// they cover is saved afterwards. This only sees messages saved by this node's pipeline.
+// A receipt covers everything sent up to the (sentAt, id) of the newest message the client has: ids come
+// from per-node blocks, so a lower id from another node may have been sent after it.
+@Service
+public class ReceiptService {
+	private static final Logger log = LoggerFactory.getLogger(ReceiptService.class);
+
+	private final MessageService messageService;
+	private final SimpMessagingTemplate messagingTemplate;
+
+	private final Map<Pair, UpTo> pendingDelivered = new ConcurrentHashMap<>();
+	private final Map<Pair, UpTo> pendingSeen = new ConcurrentHashMap<>();
+	private final Map<Pair, Applied> appliedDelivered = new ConcurrentHashMap<>();
+	private final Map<Pair, Applied> appliedSeen = new ConcurrentHashMap<>();
+
+	// how long an applied receipt is re-applied to late inserts; well above the write-behind flush lag
+	@Value("${chat.receipts.reapply-window-ms:60000}")
+	private long reapplyWindowMs = 60000;
+
+	private record Pair(Integer senderId, Integer readerId) {
+	}
+
+	private record UpTo(LocalDateTime sentAt, Integer id) implements Comparable<UpTo> {
+		private static final Comparator<UpTo> ORDER = Comparator.comparing(UpTo::sentAt).thenComparing(UpTo::id);
+
+		static UpTo of(Message message) {
+			return new UpTo(message.getSentAt(), message.getId());
+		}
+
+		static UpTo max(UpTo a, UpTo b) {
+			return a.compareTo(b) >= 0 ? a : b;
+		}
+
+		@Override
+		public int compareTo(UpTo other) {
+			return ORDER.compare(this, other);
+		}
+	}
+
+	private record Applied(UpTo upTo, long at) {
+	}
+
+	public ReceiptService(MessageService messageService, SimpMessagingTemplate messagingTemplate) {
+		this.messageService = messageService;
+		this.messagingTemplate = messagingTemplate;
+	}
+
+	public void submit(ReceiptDTO receipt) {
+		if (receipt.getSenderId() == null || receipt.getUpToSentAt() == null || receipt.getUpToMessageId() == null
+				|| receipt.getStatus() == null) {
+			throw new IllegalArgumentException("senderId, upToSentAt, upToMessageId and status are required");
+		}
+		Status status = Status.valueOf(receipt.getStatus().toUpperCase());
+		Pair pair = new Pair(receipt.getSenderId(), receipt.getReaderId());
+		UpTo upTo = new UpTo(receipt.getUpToSentAt(), receipt.getUpToMessageId());
+		switch (status) {
+			case DELIVERED -> pendingDelivered.merge(pair, upTo, UpTo::max);
+			case SEEN -> pendingSeen.merge(pair, upTo, UpTo::max);
+			default -> throw new IllegalArgumentException("Receipts are DELIVERED or SEEN");
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${chat.receipts.flush-interval-ms:250}")
+	public void flush() {
+		long now = System.currentTimeMillis();
+		drain(pendingDelivered, appliedDelivered, Status.DELIVERED, now);
+		drain(pendingSeen, appliedSeen, Status.SEEN, now);
+		appliedDelivered.values().removeIf(applied -> now - applied.at() > reapplyWindowMs);
+		appliedSeen.values().removeIf(applied -> now - applied.at() > reapplyWindowMs);
+	}
+
+	// a receipt leaves pending only once its UPDATE succeeded, and only if no newer one was merged meanwhile;
+	// a failing pair is retried next flush without holding up the others
+	private void drain(Map<Pair, UpTo> pending, Map<Pair, Applied> applied, Status status, long now) {
+		for (Map.Entry<Pair, UpTo> entry : pending.entrySet()) {
+			Pair pair = entry.getKey();
+			UpTo upTo = entry.getValue();
+			try {
+				messageService.markUpTo(pair.senderId(), pair.readerId(), upTo.sentAt(), upTo.id(), status);
+			} catch (RuntimeException e) {
+				log.warn("Failed to mark messages from {} to {} up to {} as {}, retrying", pair.senderId(),
+						pair.readerId(), upTo, status, e);
+				continue;
+			}
+			pending.remove(pair, upTo);
+			applied.merge(pair, new Applied(upTo, now),
+					(old, latest) -> new Applied(UpTo.max(old.upTo(), latest.upTo()), now));
+			try {
+				messagingTemplate.convertAndSendToUser(pair.senderId().toString(), ChatDestinations.USER_RECEIPTS,
+						new ReceiptDTO(pair.senderId(), pair.readerId(), upTo.sentAt(), upTo.id(), status.name()));
+			} catch (RuntimeException e) {
+				log.warn("Failed to notify {} of a {} receipt", pair.senderId(), status, e);
+			}
+		}
+	}
+
+	// a message committed after a receipt that covers it: run that receipt again on the next flush
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onMessagesSaved(MessagesSavedEvent event) {
+		for (Message message : event.messages()) {
+			Pair pair = new Pair(message.getSenderId(), message.getReceiverId());
+			reapply(appliedDelivered, pendingDelivered, pair, UpTo.of(message));
+			reapply(appliedSeen, pendingSeen, pair, UpTo.of(message));
+		}
+	}
+
+	private static void reapply(Map<Pair, Applied> applied, Map<Pair, UpTo> pending, Pair pair, UpTo saved) {
+		Applied receipt = applied.get(pair);
+		if (receipt != null && saved.compareTo(receipt.upTo()) <= 0) {
+			pending.merge(pair, receipt.upTo(), UpTo::max);
+		}
+	}
+}
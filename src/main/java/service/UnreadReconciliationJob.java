@@ -0,0 +1,34 @@
+package service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import repository.ConversationRepository;
+import repository.UnreadCounterRepository;
+
+// repairs counter drift (lost updates, manual edits) by re-deriving the counters from messages;
+// sends racing with the run can still be off by one until the next run, so schedule it off-peak
+@Component
+public class UnreadReconciliationJob {
+	private static final Logger log = LoggerFactory.getLogger(UnreadReconciliationJob.class);
+
+	private final ConversationRepository conversationRepository;
+	private final UnreadCounterRepository unreadCounterRepository;
+
+	public UnreadReconciliationJob(ConversationRepository conversationRepository,
+			UnreadCounterRepository unreadCounterRepository) {
+		this.conversationRepository = conversationRepository;
+		this.unreadCounterRepository = unreadCounterRepository;
+	}
+
+	@Scheduled(cron = "${chat.unread.reconcile-cron:0 30 3 * * *}")
+	@Transactional
+	public void reconcile() {
+		int conversations = conversationRepository.rebuildFromMessages();
+		int counters = unreadCounterRepository.rebuildFromConversations();
+		log.info("Unread reconciliation touched {} conversation rows and {} counters", conversations, counters);
+	}
+}
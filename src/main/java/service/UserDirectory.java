@@ -0,0 +1,169 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import dto.UserDetail;
+import entities.User.Role;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import repository.UserRepository;
+
+// in-memory answer to "does this user id exist", so sending a message needs no user SELECT,
+// plus the versioned /dropdown listing
+@Service
+public class UserDirectory {
+	private final UserRepository userRepository;
+	private final Cache<Integer, Boolean> knownUsers;
+	// one entry per role; the ttl bounds staleness when another node registers a user
+	private final Cache<Role, Listing> listings;
+
+	@Value("${chat.user-directory.page-size:50}")
+	private int defaultPageSize;
+
+	@Value("${chat.user-directory.max-page-size:200}")
+	private int maxPageSize;
+
+	// users sorted by id, etag is a hash of the content so it survives restarts and agrees across nodes
+	public record Listing(List<UserDetail> users, String etag) {
+	}
+
+	public UserDirectory(UserRepository userRepository, MeterRegistry meterRegistry,
+			@Value("${chat.user-directory.max-size:100000}") long maxSize,
+			@Value("${chat.user-directory.ttl:10m}") Duration ttl) {
+		this.userRepository = userRepository;
+		this.knownUsers = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		this.listings = Caffeine.newBuilder()
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, knownUsers, "userDirectory");
+		CaffeineCacheMetrics.monitor(meterRegistry, listings, "userListing");
+	}
+
+	// only hits are cached: a miss may come from a replica that has not seen the registration yet
+	public boolean exists(Integer userId) {
+		if (userId == null) {
+			return false;
+		}
+		if (knownUsers.getIfPresent(userId) != null) {
+			return true;
+		}
+		boolean exists = userRepository.existsById(userId);
+		if (exists) {
+			knownUsers.put(userId, Boolean.TRUE);
+		}
+		return exists;
+	}
+
+	// delete has to drop the cached hit, register the listing
+	public void invalidate(Integer userId) {
+		knownUsers.invalidate(userId);
+		listings.invalidateAll();
+	}
+
+	@Transactional(readOnly = true)
+	public Listing listing(Role role) {
+		return listings.get(role, this::loadListing);
+	}
+
+	// etag for one request; it only changes when the directory does, so a 304 costs no query
+	public String etag(Role role, String prefix, Integer afterId, Integer size) {
+		String base = listing(role).etag();
+		if (prefix == null && afterId == null && size == null) {
+			return base;
+		}
+		return base + "-" + Integer.toHexString(Objects.hash(prefix, afterId, clampPageSize(size)));
+	}
+
+	// unfiltered pages are sliced from the cached listing, prefix searches go to the (role, name/email) indexes
+	@Transactional(readOnly = true)
+	public List<UserDetail> page(Role role, String prefix, Integer afterId, Integer size) {
+		int limit = clampPageSize(size);
+		int after = afterId == null ? 0 : afterId;
+		if (prefix != null && !prefix.isBlank()) {
+			return search(role, escapeLike(prefix.trim()) + "%", afterId, limit);
+		}
+		List<UserDetail> users = listing(role).users();
+		int from = Collections.binarySearch(users, new UserDetail(after, null, null),
+				Comparator.comparing(UserDetail::getId));
+		from = from >= 0 ? from + 1 : -from - 1;
+		return users.subList(from, Math.min(from + limit, users.size()));
+	}
+
+	// name matches by (name, id), then email-only matches by (email, id). The client only sends back the last
+	// id, so the keys to continue from are read from that row, and whether its name matches says which range.
+	private List<UserDetail> search(Role role, String like, Integer afterId, int limit) {
+		List<UserDetail> page = new ArrayList<>(limit);
+		String afterEmail = "";
+		int emailAfterId = 0;
+		if (afterId == null) {
+			page.addAll(userRepository.searchDirectoryByName(role, like, "", 0, Limit.of(limit)));
+		} else {
+			Optional<UserDetail> byName = userRepository.findSearchCursor(role, afterId, like, true);
+			if (byName.isPresent()) {
+				page.addAll(userRepository.searchDirectoryByName(role, like, byName.get().getName(), afterId,
+						Limit.of(limit)));
+			} else {
+				Optional<UserDetail> byEmail = userRepository.findSearchCursor(role, afterId, like, false);
+				if (byEmail.isEmpty()) {
+					// the cursor row is gone or not in this role, there is no position to continue from
+					return List.of();
+				}
+				afterEmail = byEmail.get().getEmail();
+				emailAfterId = afterId;
+			}
+		}
+		if (page.size() < limit) {
+			page.addAll(userRepository.searchDirectoryByEmail(role, like, afterEmail, emailAfterId,
+					Limit.of(limit - page.size())));
+		}
+		return page;
+	}
+
+	private Listing loadListing(Role role) {
+		List<UserDetail> users = List.copyOf(userRepository.findDirectory(role));
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (UserDetail user : users) {
+				digest.update((user.getId() + "\u0000" + user.getName() + "\u0000" + user.getEmail() + "\n")
+						.getBytes(StandardCharsets.UTF_8));
+			}
+			return new Listing(users, HexFormat.of().formatHex(digest.digest(), 0, 16));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private int clampPageSize(Integer size) {
+		if (size == null || size <= 0) {
+			return defaultPageSize;
+		}
+		return Math.min(size, maxPageSize);
+	}
+
+	private static String escapeLike(String value) {
+		return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+	}
+}
@@ -1,6 +1,9 @@
 package service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import dto.UserDetail;
 import entities.User;
 import java.util.List;
 import java.util.Optional;
@@ -15,21 +18,40 @@ import repository.UserRepository;
 
 @Service
 public class UserService implements UserDetailsService {
+	private static final Logger log = LoggerFactory.getLogger(UserService.class);
 	
-	public UserService(UserRepository userRespository) {
+	public UserService(UserRepository userRespository, UserDirectory userDirectory,
+			ReadYourWritesGuard readYourWritesGuard) {
 		this.userRespository = userRespository;
+		this.userDirectory = userDirectory;
+		this.readYourWritesGuard = readYourWritesGuard;
 	}
 
 	private final UserRepository userRespository;
+	private final UserDirectory userDirectory;
+	private final ReadYourWritesGuard readYourWritesGuard;
+
+	 public User register(User user) {
+		 User saved = userRespository.save(user);
+		 userDirectory.invalidate(saved.getId());
+		 readYourWritesGuard.recordWrite(saved.getId());
+		 return saved;
+	 }
+	 // uninitialized proxy holding only the id, enough to set a foreign key
+	 public User getReference(Integer id) {
+		 return userRespository.getReferenceById(id);
+	 }
+	 public boolean exists(Integer id) {
+		 return userDirectory.exists(id);
+	 }
 
 	 public User findByEmail(String email) {
 	        return userRespository.findByEmail(email)
 	                .orElse(null);  // or throw exception if preferred
 	    }
 	 public Optional<User> searchUserByEmail(String email) {
-		    System.out.println("Searching for email: " + email);
 		    Optional<User> result = userRespository.searchByEmail(email);
-		    System.out.println("Found user: " + result.isPresent());
+		    log.debug("Email search found a user: {}", result.isPresent());
 		    return result;
 		}
 	 public User findById(Integer id) {
@@ -44,6 +66,16 @@ public class UserService implements UserDetailsService {
 	 public List<User> getByRole(Role role){
 		 return userRespository.findByRole(role);
 	 }
+	 // /dropdown: the whole cached listing when no paging or search is asked for
+	 public List<UserDetail> getDirectory(String prefix, Integer afterId, Integer size) {
+		 if (prefix == null && afterId == null && size == null) {
+			 return userDirectory.listing(Role.USER).users();
+		 }
+		 return userDirectory.page(Role.USER, prefix, afterId, size);
+	 }
+	 public String getDirectoryEtag(String prefix, Integer afterId, Integer size) {
+		 return userDirectory.etag(Role.USER, prefix, afterId, size);
+	 }
 	 @Override
 	 public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
 		 var user = userRespository.findByEmail(email).orElseThrow(
@@ -0,0 +1 @@
+CREATE INDEX idx_messages_pair_sent_at ON messages (sender_id, receiver_id, sent_at, id);
@@ -0,0 +1,15 @@
+CREATE TABLE conversations (
+  user_low_id INT NOT NULL,
+  user_high_id INT NOT NULL,
+  last_message_id INT NOT NULL,
+  last_sender_id INT NOT NULL,
+  last_message_preview VARCHAR(255) NOT NULL,
+  last_message_at TIMESTAMP NOT NULL,
+  unread_low INT NOT NULL DEFAULT 0,
+  unread_high INT NOT NULL DEFAULT 0,
+  PRIMARY KEY (user_low_id, user_high_id),
+  KEY idx_conversations_low_at (user_low_id, last_message_at),
+  KEY idx_conversations_high_at (user_high_id, last_message_at),
+  FOREIGN KEY (user_low_id) REFERENCES user(id),
+  FOREIGN KEY (user_high_id) REFERENCES user(id)
+);
@@ -0,0 +1,5 @@
+-- ids for messages are handed out in blocks by MessageIdAllocator, next_val is the first id of the next block
+CREATE TABLE messages_seq (
+  next_val BIGINT NOT NULL
+);
+INSERT INTO messages_seq (next_val) SELECT COALESCE(MAX(id), 0) + 1 FROM messages;
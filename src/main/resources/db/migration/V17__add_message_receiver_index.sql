@@ -0,0 +1 @@
+CREATE INDEX idx_messages_receiver_id ON messages (receiver_id, id);
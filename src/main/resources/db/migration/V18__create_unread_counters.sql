@@ -0,0 +1,13 @@
+CREATE TABLE unread_counters (
+  user_id INT PRIMARY KEY,
+  total INT NOT NULL DEFAULT 0,
+  FOREIGN KEY (user_id) REFERENCES user(id)
+);
+
+INSERT INTO unread_counters (user_id, total)
+SELECT user_id, SUM(unread) FROM (
+  SELECT user_low_id AS user_id, unread_low AS unread FROM conversations
+  UNION ALL
+  SELECT user_high_id, unread_high FROM conversations
+) per_side
+GROUP BY user_id;
@@ -0,0 +1,3 @@
+-- /dropdown prefix search filters on role, then ranges on name or email
+CREATE INDEX idx_user_role_name ON user (role, name);
+CREATE INDEX idx_user_role_email ON user (role, email);
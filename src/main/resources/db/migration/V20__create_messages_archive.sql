@@ -0,0 +1,11 @@
+-- cold tier for messages older than chat.archive.hot-months, filled by MessageArchiveService
+CREATE TABLE messages_archive (
+  id INT NOT NULL PRIMARY KEY,
+  sender_id INT NOT NULL,
+  receiver_id INT NOT NULL,
+  message_text TEXT NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  sent_at TIMESTAMP NOT NULL,
+  INDEX idx_messages_archive_pair_sent_at (sender_id, receiver_id, sent_at, id),
+  INDEX idx_messages_archive_receiver_id (receiver_id, id)
+) ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
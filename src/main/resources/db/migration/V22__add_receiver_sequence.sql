@@ -0,0 +1,39 @@
+-- reconnect sync pages on a per-receiver sequence instead of the id: ids come from per-node blocks and
+-- write-behind batches commit out of id order, so "id > cursor" could skip a message committed late.
+-- receiver_sequences.last_seq is bumped in the saving transaction and stays locked until it commits,
+-- so a receiver's messages become visible in receiver_seq order.
+CREATE TABLE receiver_sequences (
+  user_id INT PRIMARY KEY,
+  last_seq BIGINT NOT NULL
+);
+
+ALTER TABLE messages ADD COLUMN receiver_seq BIGINT NULL;
+ALTER TABLE messages_archive ADD COLUMN receiver_seq BIGINT NULL;
+
+-- existing rows are numbered per receiver in id order across both tiers
+CREATE TEMPORARY TABLE receiver_seq_backfill (
+  id INT PRIMARY KEY,
+  receiver_seq BIGINT NOT NULL
+);
+INSERT INTO receiver_seq_backfill (id, receiver_seq)
+SELECT id, ROW_NUMBER() OVER (PARTITION BY receiver_id ORDER BY id) FROM (
+  SELECT id, receiver_id FROM messages
+  UNION ALL
+  SELECT id, receiver_id FROM messages_archive
+) all_messages;
+
+UPDATE messages m JOIN receiver_seq_backfill b ON b.id = m.id SET m.receiver_seq = b.receiver_seq;
+UPDATE messages_archive a JOIN receiver_seq_backfill b ON b.id = a.id SET a.receiver_seq = b.receiver_seq;
+
+INSERT INTO receiver_sequences (user_id, last_seq)
+SELECT receiver_id, COUNT(*) FROM (
+  SELECT receiver_id FROM messages
+  UNION ALL
+  SELECT receiver_id FROM messages_archive
+) all_messages
+GROUP BY receiver_id;
+
+DROP TEMPORARY TABLE receiver_seq_backfill;
+
+CREATE INDEX idx_messages_receiver_seq ON messages (receiver_id, receiver_seq);
+CREATE INDEX idx_messages_archive_receiver_seq ON messages_archive (receiver_id, receiver_seq);
@@ -2,6 +2,9 @@ import React, { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import axios from 'axios';
 
+// newest first, in pages of this many; the server caps it at chat.history.max-page-size
+const ADMIN_PAGE_SIZE = 200;
+
 function AdminChat() {
   const navigate = useNavigate();
   const [allMessages, setAllMessages] = useState([]);
@@ -11,6 +14,8 @@ function AdminChat() {
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState('');
   const [searchTerm, setSearchTerm] = useState('');
+  const [hasMore, setHasMore] = useState(false);
+  const [loadingMore, setLoadingMore] = useState(false);
 
   useEffect(() => {
     checkAuthAndFetchMessages();
@@ -42,20 +47,29 @@ function AdminChat() {
     }
   };
 
-  const fetchAllMessages = async (token) => {
+  // without beforeId loads the newest page, with it the page below that id is appended
+  const fetchAllMessages = async (token, beforeId) => {
     try {
       const endpoint = `${process.env.REACT_APP_API_BASE_URL}/allmessages`;
       
       const response = await axios.get(endpoint, {
+        params: {
+          size: ADMIN_PAGE_SIZE,
+          ...(beforeId ? { beforeId } : {})
+        },
         headers: {
           'Authorization': `Bearer ${token}`,
           'Content-Type': 'application/json'
         }
       });
 
-      const messagesData = response.data;
+      const messagesData = beforeId ? [...allMessages, ...response.data] : response.data;
       setAllMessages(messagesData);
-      generateChatList(messagesData);
+      setHasMore(response.data.length >= ADMIN_PAGE_SIZE);
+      const chats = generateChatList(messagesData);
+      if (selectedChat) {
+        setSelectedChatMessages(chats.find(chat => chat.id === selectedChat.id)?.messages || []);
+      }
       setLoading(false);
 
     } catch (err) {
@@ -130,6 +144,15 @@ function AdminChat() {
     );
     
     setChatList(chats);
+    return chats;
+  };
+
+  const loadOlderMessages = async () => {
+    const oldest = allMessages[allMessages.length - 1];
+    if (!oldest || loadingMore) return;
+    setLoadingMore(true);
+    await fetchAllMessages(localStorage.getItem('token'), oldest.id);
+    setLoadingMore(false);
   };
 
   const handleChatSelect = (chat) => {
@@ -248,6 +271,15 @@ function AdminChat() {
             ) : (
               <div className="no-chats-yet">No chats available.</div>
             )}
+            {hasMore && (
+              <button
+                onClick={loadOlderMessages}
+                className="load-older-button"
+                disabled={loadingMore}
+              >
+                {loadingMore ? 'Loading...' : 'Load older messages'}
+              </button>
+            )}
           </div>
         </div>
 
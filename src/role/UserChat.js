@@ -4,6 +4,9 @@ import { Client } from "@stomp/stompjs";
 import SockJS from "sockjs-client";
 import axios from 'axios';
 
+// matches chat.history.default-page-size on the server
+const HISTORY_PAGE_SIZE = 50;
+
 function UserChat() {
   const navigate = useNavigate();
   const token = localStorage.getItem('token');
@@ -26,12 +29,14 @@ function UserChat() {
   const [chatsLoading, setChatsLoading] = useState(true);
   const [chatsLoaded, setChatsLoaded] = useState(false); // Flag to prevent re-loading
   const [userCache, setUserCache] = useState(new Map()); // Cache for user details
-  const [loadedChatHistories, setLoadedChatHistories] = useState(new Set()); // Track which chats have full history loaded
+  const [loadedChatHistories, setLoadedChatHistories] = useState(new Set()); // Track which chats have their first page loaded
+  const [olderLoading, setOlderLoading] = useState(false);
 
   const stompClientRef = useRef(null);
   const messagesEndRef = useRef(null);
   const activeChatRef = useRef(activeChat);
   const dropdownRef = useRef(null);
+  const keepScrollRef = useRef(false);
 
   useEffect(() => {
     activeChatRef.current = activeChat;
@@ -138,6 +143,26 @@ function UserChat() {
     }
   }, [getUserDetails, user?.id]);
 
+  // A loaded page of the open chat counts as read: one SEEN receipt for its newest unseen incoming
+  // message covers everything before it (the server applies receipts up to a message)
+  const acknowledgeSeen = useCallback((messages) => {
+    const client = stompClientRef.current;
+    const newest = [...messages].reverse()
+      .find(m => m.receiverId === user?.id && m.status !== "SEEN");
+    if (!newest || !client?.connected) {
+      return;
+    }
+    client.publish({
+      destination: "/app/receipt",
+      body: JSON.stringify({
+        senderId: newest.senderId,
+        upToSentAt: newest.sentAt,
+        upToMessageId: newest.id,
+        status: "SEEN",
+      }),
+    });
+  }, [user?.id]);
+
   // Fix Issue 2: Function to load chat history
   const loadChatHistory = useCallback(async (chatId, receiverId) => {
     if (!user?.id || !receiverId || loadedChatHistories.has(chatId)) {
@@ -155,11 +180,12 @@ function UserChat() {
         }
       );
 
-      // Update the chat with full message history
+      // The server returns the newest page only; a full page means there may be older ones
+      const hasOlder = response.data.length >= HISTORY_PAGE_SIZE;
       setChats(prevChats =>
         prevChats.map(chat =>
           chat.id === chatId
-            ? { ...chat, messages: response.data }
+            ? { ...chat, messages: response.data, hasOlder }
             : chat
         )
       );
@@ -168,8 +194,10 @@ function UserChat() {
       if (activeChatRef.current?.id === chatId) {
         setActiveChat(prev => ({
           ...prev,
-          messages: response.data
+          messages: response.data,
+          hasOlder
         }));
+        acknowledgeSeen(response.data);
       }
 
       // Mark this chat history as loaded
@@ -177,7 +205,46 @@ function UserChat() {
     } catch (error) {
       console.error("Chat history error:", error);
     }
-  }, [user?.id, token]);
+  }, [user?.id, token, acknowledgeSeen]);
+
+  // Scroll-back: the oldest message on screen is the cursor for the page before it
+  const loadOlderMessages = useCallback(async () => {
+    const chat = activeChatRef.current;
+    const oldest = chat?.messages?.[0];
+    if (!user?.id || !chat?.receiverId || !oldest || olderLoading) {
+      return;
+    }
+
+    try {
+      setOlderLoading(true);
+      const response = await axios.get(
+        `${process.env.REACT_APP_API_BASE_URL}/api/messages/chat/${user.id}/${chat.receiverId}`,
+        {
+          params: {
+            before: oldest.sentAt,
+            beforeId: oldest.id,
+            size: HISTORY_PAGE_SIZE,
+          },
+          headers: {
+            Authorization: `Bearer ${token}`,
+          },
+        }
+      );
+
+      const hasOlder = response.data.length >= HISTORY_PAGE_SIZE;
+      const prepend = c => ({ ...c, messages: [...response.data, ...(c.messages || [])], hasOlder });
+      keepScrollRef.current = true;
+      setChats(prevChats => prevChats.map(c => c.id === chat.id ? prepend(c) : c));
+      if (activeChatRef.current?.id === chat.id) {
+        setActiveChat(prev => prepend(prev));
+        acknowledgeSeen(response.data);
+      }
+    } catch (error) {
+      console.error("Older messages error:", error);
+    } finally {
+      setOlderLoading(false);
+    }
+  }, [user?.id, token, olderLoading, acknowledgeSeen]);
 
   // Scroll to bottom of messages
   const scrollToBottom = () => {
@@ -185,6 +252,11 @@ function UserChat() {
   };
 
   useEffect(() => {
+    // older messages go on top, stay where the user is reading
+    if (keepScrollRef.current) {
+      keepScrollRef.current = false;
+      return;
+    }
     scrollToBottom();
   }, [activeChat, chats]);
 
@@ -270,9 +342,14 @@ function UserChat() {
   // Load chat history when selecting a chat
   useEffect(() => {
     if (activeChat && activeChat.receiverId) {
-      loadChatHistory(activeChat.id, activeChat.receiverId);
+      if (loadedChatHistories.has(activeChat.id)) {
+        // loaded in the background while the chat was closed, now it is on screen
+        acknowledgeSeen(activeChat.messages || []);
+      } else {
+        loadChatHistory(activeChat.id, activeChat.receiverId);
+      }
     }
-  }, [activeChat?.id, loadChatHistory]);
+  }, [activeChat?.id, loadChatHistory, acknowledgeSeen]);
 
   useEffect(() => {
     if (!token || !user) {
@@ -289,18 +366,13 @@ function UserChat() {
       onConnect: () => {
         console.log("Connected to WebSocket");
 
-        // Subscribe to all chat messages
-        client.subscribe("/topic/message", async (message) => {
+        // Subscribe to messages addressed to this user
+        client.subscribe("/user/queue/messages", async (message) => {
           const receivedMessage = JSON.parse(message.body);
           if (receivedMessage.senderId === user.id) {
             return;
           }
           console.log("Received message:", receivedMessage);
-           
-          client.subscribe("/queue/messages", (msg) => {
-            const privateMessage = JSON.parse(msg.body);
-            console.log("Received private message:", privateMessage);
-          });
 
           // Get sender details for the received message
           const senderDetails = await getUserDetails(receivedMessage.senderId);
@@ -349,10 +421,23 @@ function UserChat() {
           const currentActiveChat = activeChatRef.current;
           
           // Auto-set activeChat if message belongs to it
-          if (currentActiveChat && (
+          const isActiveChat = currentActiveChat && (
             (receivedMessage.senderId === user.id && receivedMessage.receiverId === currentActiveChat.receiverId) ||
             (receivedMessage.receiverId === user.id && receivedMessage.senderId === currentActiveChat.receiverId)
-          )) {
+          );
+
+          // Acknowledge: seen if the chat is open, otherwise just delivered (server batches these)
+          client.publish({
+            destination: "/app/receipt",
+            body: JSON.stringify({
+              senderId: receivedMessage.senderId,
+              upToSentAt: receivedMessage.sentAt,
+              upToMessageId: receivedMessage.id,
+              status: isActiveChat ? "SEEN" : "DELIVERED",
+            }),
+          });
+
+          if (isActiveChat) {
             setActiveChat((prev) => {
               return {
                 ...prev,
@@ -665,6 +750,15 @@ function UserChat() {
               </div>
 
               <div className="messages">
+                {activeChat.hasOlder && (
+                  <button
+                    onClick={loadOlderMessages}
+                    className="load-older-button"
+                    disabled={olderLoading}
+                  >
+                    {olderLoading ? 'Loading...' : 'Load older messages'}
+                  </button>
+                )}
                 {(activeChat.messages && activeChat.messages.length > 0) ? (
                   activeChat.messages.map((msg, i) => (
                     <div
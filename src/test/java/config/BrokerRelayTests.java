@@ -0,0 +1,209 @@
+package config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import entities.User;
+import entities.User.Role;
+import my_app.MyAppApplication;
+import service.JwtService;
+
+// two chat nodes sharing one embedded STOMP broker: bare relay handlers for the topic path, then two
+// application contexts for user destinations
+class BrokerRelayTests {
+
+	static EmbeddedActiveMQ broker;
+	static int port;
+
+	@BeforeAll
+	static void startBroker() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		broker = new EmbeddedActiveMQ();
+		broker.setConfiguration(new ConfigurationImpl()
+				.setPersistenceEnabled(false)
+				.setSecurityEnabled(false)
+				.addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + port
+						+ "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/"));
+		broker.start();
+	}
+
+	@AfterAll
+	static void stopBroker() throws Exception {
+		broker.stop();
+	}
+
+	@Test
+	void messagePublishedOnOneNodeReachesSubscriberOnAnother() throws Exception {
+		StompBrokerRelayMessageHandler nodeA = relay(new ExecutorSubscribableChannel());
+		ExecutorSubscribableChannel outboundB = new ExecutorSubscribableChannel();
+		StompBrokerRelayMessageHandler nodeB = relay(outboundB);
+		BlockingQueue<Message<?>> received = new LinkedBlockingQueue<>();
+		outboundB.subscribe(received::add);
+		try {
+			awaitAvailable(nodeA);
+			awaitAvailable(nodeB);
+
+			nodeB.handleMessage(frame(StompCommand.CONNECT, "client-1", null));
+			assertThat(pollFrame(received, StompCommand.CONNECTED)).isNotNull();
+			StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+			subscribe.setSessionId("client-1");
+			subscribe.setSubscriptionId("sub-1");
+			subscribe.setDestination("/topic/conversation.1-2");
+			nodeB.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+
+			// the subscription is asynchronous at the broker, resend until it is in place
+			Message<?> delivered = null;
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (delivered == null && System.nanoTime() < deadline) {
+				nodeA.handleMessage(frame(StompCommand.SEND, null, "/topic/conversation.1-2"));
+				delivered = pollFrame(received, StompCommand.MESSAGE);
+			}
+
+			assertThat(delivered).isNotNull();
+			assertThat(new String((byte[]) delivered.getPayload(), StandardCharsets.UTF_8)).isEqualTo("hello");
+		} finally {
+			nodeA.stop();
+			nodeB.stop();
+		}
+	}
+
+	// the feature itself: a user connected to node B gets what node A sends with convertAndSendToUser
+	@Test
+	void userDestinationReachesSessionOnAnotherNode() throws Exception {
+		ConfigurableApplicationContext nodeA = node("a");
+		ConfigurableApplicationContext nodeB = node("b");
+		WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+		try {
+			String token = nodeB.getBean(JwtService.class)
+					.generateToken(new User(7, "carol", "carol@example.com", null, Role.USER));
+			StompHeaders connect = new StompHeaders();
+			connect.add("Authorization", "Bearer " + token);
+			BlockingQueue<String> received = new LinkedBlockingQueue<>();
+			StompSession session = client.connectAsync(
+					"ws://localhost:" + nodeB.getEnvironment().getProperty("local.server.port") + "/stomp",
+					(WebSocketHttpHeaders) null, connect, new StompSessionHandlerAdapter() {
+					}).get(10, TimeUnit.SECONDS);
+			session.subscribe("/user" + ChatDestinations.USER_MESSAGES, new StompSessionHandlerAdapter() {
+				@Override
+				public Type getPayloadType(StompHeaders headers) {
+					return byte[].class;
+				}
+
+				@Override
+				public void handleFrame(StompHeaders headers, Object payload) {
+					received.add(new String((byte[]) payload, StandardCharsets.UTF_8));
+				}
+			});
+
+			// node A learns about the session through the broker, resend until it is routed
+			SimpMessagingTemplate nodeATemplate = nodeA.getBean(SimpMessagingTemplate.class);
+			String delivered = null;
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+			while (delivered == null && System.nanoTime() < deadline) {
+				nodeATemplate.convertAndSendToUser("7", ChatDestinations.USER_MESSAGES, "from node a");
+				delivered = received.poll(500, TimeUnit.MILLISECONDS);
+			}
+
+			assertThat(delivered).isEqualTo("from node a");
+			session.disconnect();
+		} finally {
+			client.stop();
+			nodeA.close();
+			nodeB.close();
+		}
+	}
+
+	// the whole application in relay mode on a random port; H2 stands in for MySQL, nothing here queries it
+	private static ConfigurableApplicationContext node(String name) throws Exception {
+		return new SpringApplicationBuilder(MyAppApplication.class).run(
+				"--server.port=0",
+				"--management.server.port=0",
+				"--spring.datasource.url=jdbc:h2:mem:relay-" + name + ";MODE=MySQL;NON_KEYWORDS=USER;IGNORE_UNKNOWN_SETTINGS=TRUE",
+				"--spring.datasource.driver-class-name=org.h2.Driver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.flyway.enabled=false",
+				"--spring.jpa.hibernate.ddl-auto=create-drop",
+				"--chat.broker.mode=relay",
+				"--chat.broker.relay.host=127.0.0.1",
+				"--chat.broker.relay.port=" + port,
+				"--chat.search.index-dir=" + Files.createTempDirectory("relay-index-" + name),
+				"--chat.search.rebuild-if-empty=false",
+				"--chat.archive.enabled=false",
+				"--logging.level.root=WARN");
+	}
+
+	// configured the way WebSocketConfig does in relay mode
+	private static StompBrokerRelayMessageHandler relay(ExecutorSubscribableChannel outbound) {
+		StompBrokerRelayMessageHandler relay = new StompBrokerRelayMessageHandler(
+				new ExecutorSubscribableChannel(), outbound, new ExecutorSubscribableChannel(),
+				List.of("/topic", "/queue"));
+		relay.setRelayHost("127.0.0.1");
+		relay.setRelayPort(port);
+		relay.setClientLogin("guest");
+		relay.setClientPasscode("guest");
+		relay.setSystemLogin("guest");
+		relay.setSystemPasscode("guest");
+		relay.start();
+		return relay;
+	}
+
+	private static void awaitAvailable(StompBrokerRelayMessageHandler relay) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!relay.isBrokerAvailable() && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(relay.isBrokerAvailable()).isTrue();
+	}
+
+	private static Message<byte[]> frame(StompCommand command, String sessionId, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination(destination);
+		accessor.setAcceptVersion("1.2");
+		accessor.setLeaveMutable(true); // the relay stamps the system session id onto SEND frames
+		byte[] payload = command == StompCommand.SEND ? "hello".getBytes(StandardCharsets.UTF_8) : new byte[0];
+		return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+	}
+
+	private static Message<?> pollFrame(BlockingQueue<Message<?>> received, StompCommand command) throws InterruptedException {
+		Message<?> message;
+		while ((message = received.poll(500, TimeUnit.MILLISECONDS)) != null) {
+			if (command.equals(StompHeaderAccessor.wrap(message).getCommand())) {
+				return message;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,119 @@
+package config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dto.MessageDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// sessions "ws" and "ws-json" connect on /stomp, "sockjs" on /ws; only "ws" asks for CBOR and gets it
+class CompactPayloadsTests {
+
+	ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+	CompactPayloads payloads = new CompactPayloads(Jackson2ObjectMapperBuilder.json(), new SimpleMeterRegistry(),
+			true);
+	MessageDTO message = new MessageDTO(42, "hello", LocalDateTime.of(2026, 10, 18, 12, 30, 5), "SENT", 7, 9);
+
+	@Test
+	void jsonToCborRoundTripsAMessage() throws Exception {
+		byte[] body = json.writeValueAsBytes(message);
+		byte[] cbor = CompactPayloads.jsonToCbor(body);
+
+		assertThat(cbor.length).isLessThan(body.length);
+		assertThat(payloads.converter().fromMessage(withContentType(cbor, CompactPayloads.APPLICATION_CBOR),
+				MessageDTO.class)).usingRecursiveComparison().isEqualTo(message);
+	}
+
+	@Test
+	void sendsLabelledCborAreRelabelledForTheCborConverter() throws Exception {
+		byte[] cbor = CompactPayloads.jsonToCbor(json.writeValueAsBytes(message));
+
+		Message<?> labelled = payloads.inbound().preSend(send(cbor, CompactPayloads.CBOR), null);
+		assertThat(labelled.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(CompactPayloads.APPLICATION_CBOR);
+		assertThat(payloads.converter().fromMessage(labelled, MessageDTO.class))
+				.usingRecursiveComparison().isEqualTo(message);
+
+		// unlabelled frames are JSON and left to the default converter
+		Message<?> plain = send(json.writeValueAsBytes(message), null);
+		assertThat(payloads.inbound().preSend(plain, null)).isSameAs(plain);
+		assertThat(payloads.converter().fromMessage(plain, MessageDTO.class)).isNull();
+	}
+
+	@Test
+	void outboundBodiesAreTranscodedOnlyForSessionsThatNegotiatedCborOnStomp() throws Exception {
+		connect("ws", true, "application/cbor, application/json");
+		connect("ws-json", true, null);
+		connect("sockjs", false, "application/cbor");
+		byte[] body = json.writeValueAsBytes(message);
+
+		Message<?> cbor = payloads.outbound().beforeHandle(delivery("ws", body), null, null);
+		assertThat(cbor.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+		assertThat(SimpMessageHeaderAccessor.getFirstNativeHeader(CompactPayloads.FORMAT_HEADER, cbor.getHeaders()))
+				.isEqualTo(CompactPayloads.CBOR);
+		assertThat(cbor.getPayload()).isEqualTo(CompactPayloads.jsonToCbor(body));
+
+		for (String session : new String[] { "ws-json", "sockjs" }) {
+			Message<?> delivery = delivery(session, body);
+			assertThat(payloads.outbound().beforeHandle(delivery, null, null)).as(session).isSameAs(delivery);
+		}
+
+		payloads.onDisconnect(new SessionDisconnectEvent(this, delivery("ws", body), "ws", null));
+		Message<?> afterDisconnect = delivery("ws", body);
+		assertThat(payloads.outbound().beforeHandle(afterDisconnect, null, null)).isSameAs(afterDisconnect);
+	}
+
+	private void connect(String sessionId, boolean plainWebSocket, String accept) throws Exception {
+		Map<String, Object> attributes = new HashMap<>();
+		if (plainWebSocket) {
+			payloads.binaryTransport().beforeHandshake(null, null, null, attributes);
+		}
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+		accessor.setSessionId(sessionId);
+		accessor.setSessionAttributes(attributes);
+		if (accept != null) {
+			accessor.addNativeHeader(CompactPayloads.ACCEPT_HEADER, accept);
+		}
+		payloads.onConnect(new SessionConnectEvent(this, MessageBuilder.createMessage(new byte[0],
+				accessor.getMessageHeaders())));
+	}
+
+	private static Message<byte[]> send(byte[] body, String format) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+		accessor.setDestination("/app/sendMessage");
+		if (format != null) {
+			accessor.addNativeHeader(CompactPayloads.FORMAT_HEADER, format);
+		}
+		return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+	}
+
+	private static Message<byte[]> delivery(String sessionId, byte[] body) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination("/user/queue/messages");
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+	}
+
+	private static Message<byte[]> withContentType(byte[] body, MimeType contentType) {
+		return MessageBuilder.withPayload(body).setHeader(MessageHeaders.CONTENT_TYPE, contentType).build();
+	}
+}
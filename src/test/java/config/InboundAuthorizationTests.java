@@ -0,0 +1,106 @@
+package config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// the destination checks the inbound interceptors apply to SEND and SUBSCRIBE frames of user 7
+class InboundAuthorizationTests {
+
+	@Test
+	void sendOnlyToApplicationDestinations() {
+		assertThatCode(() -> WebSocketConfig.authorizeSend(frame(StompCommand.SEND, "/app/sendMessage")))
+				.doesNotThrowAnyException();
+		for (String destination : List.of("/topic/conversation.7-9", "/topic/presence", "/queue/messages",
+				"/user/9/queue/messages", "/application", "/app")) {
+			assertThatThrownBy(() -> WebSocketConfig.authorizeSend(frame(StompCommand.SEND, destination)))
+					.as(destination)
+					.isInstanceOf(AccessDeniedException.class);
+		}
+		assertThatThrownBy(() -> WebSocketConfig.authorizeSend(frame(StompCommand.SEND, null)))
+				.isInstanceOf(AccessDeniedException.class);
+	}
+
+	@Test
+	void subscribeOnlyToOwnQueuesPresenceAndOwnConversations() {
+		for (String destination : List.of("/user/queue/messages", "/topic/presence", "/topic/conversation.7-9")) {
+			assertThatCode(() -> WebSocketConfig.authorizeSubscription(frame(StompCommand.SUBSCRIBE, destination)))
+					.as(destination)
+					.doesNotThrowAnyException();
+		}
+		for (String destination : List.of("/topic/conversation.8-9", "/queue/messages", "/app/sendMessage")) {
+			assertThatThrownBy(() -> WebSocketConfig.authorizeSubscription(frame(StompCommand.SUBSCRIBE, destination)))
+					.as(destination)
+					.isInstanceOf(AccessDeniedException.class);
+		}
+	}
+
+	@Test
+	void onlyChatMessagesCountAgainstTheSendLimit() {
+		assertThat(WebSocketConfig.rateLimited(message(frame(StompCommand.SEND, "/app/sendMessage")))).isTrue();
+		for (String destination : List.of("/app/receipt", "/app/sync")) {
+			assertThat(WebSocketConfig.rateLimited(message(frame(StompCommand.SEND, destination))))
+					.as(destination)
+					.isFalse();
+		}
+		assertThat(WebSocketConfig.rateLimited(message(frame(StompCommand.SUBSCRIBE, "/app/sendMessage")))).isFalse();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void onlyWritesAreShedWhileTheWritePoolIsSaturated() {
+		WritePoolPressure pressure = mock(WritePoolPressure.class);
+		when(pressure.saturated()).thenReturn(true);
+		SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+		ObjectProvider<SimpMessagingTemplate> provider = mock(ObjectProvider.class);
+		when(provider.getObject()).thenReturn(messagingTemplate);
+		WebSocketConfig config = new WebSocketConfig();
+		ReflectionTestUtils.setField(config, "writePoolPressure", pressure);
+		ReflectionTestUtils.setField(config, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(config, "messagingTemplate", provider);
+		var shedding = config.sheddingInterceptor();
+
+		Message<byte[]> sync = message(frame(StompCommand.SEND, "/app/sync"));
+		assertThat(shedding.preSend(sync, null)).isSameAs(sync);
+		for (String destination : List.of("/app/sendMessage", "/app/receipt")) {
+			assertThat(shedding.preSend(message(frame(StompCommand.SEND, destination)), null)).as(destination).isNull();
+		}
+		verify(messagingTemplate, times(2)).convertAndSendToUser(eq("7"), eq("/queue/errors"), any(),
+				any(MessageHeaders.class));
+	}
+
+	private static Message<byte[]> message(StompHeaderAccessor accessor) {
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	private static StompHeaderAccessor frame(StompCommand command, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setDestination(destination);
+		accessor.setUser(new UsernamePasswordAuthenticationToken(7L, null,
+				List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+		return accessor;
+	}
+}
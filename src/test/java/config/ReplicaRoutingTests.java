@@ -0,0 +1,203 @@
+package config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import entities.Message.Status;
+import entities.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import service.MessagePersistencePipeline;
+import service.MessageService;
+import service.ReadYourWritesGuard;
+
+// two in-memory H2 databases stand in for the primary and a replica; each knows its own name
+class ReplicaRoutingTests {
+
+	DataSource primary = database("primary");
+	DataSource replica = database("replica");
+	ReadYourWritesGuard guard = new ReadYourWritesGuard(Duration.ofSeconds(5));
+	ReplicaDataSource replicas = new ReplicaDataSource(primary, List.of(replica), guard);
+	DataSource routing = DataSourceConfig.routing(primary, replicas);
+	JdbcTemplate jdbc = new JdbcTemplate(routing);
+	TransactionTemplate writes = new TransactionTemplate(new DataSourceTransactionManager(routing));
+	TransactionTemplate reads = new TransactionTemplate(new DataSourceTransactionManager(routing));
+
+	@BeforeEach
+	void setUp() {
+		reads.setReadOnly(true);
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+		assertThat(readOnly()).isEqualTo("replica");
+		assertThat(readWrite()).isEqualTo("primary");
+	}
+
+	@Test
+	void recentWritersArePinnedToThePrimary() {
+		guard.recordWrite(7);
+		assertThat(guard.wroteRecently(7)).isTrue();
+		guard.pin();
+		try {
+			assertThat(readOnly()).isEqualTo("primary");
+		} finally {
+			guard.unpin();
+		}
+		assertThat(readOnly()).isEqualTo("replica");
+	}
+
+	@Test
+	void httpRequestFromARecentWriterReadsThePrimary() throws Exception {
+		guard.recordWrite(7);
+		HandlerInterceptor interceptor = new WebConfig(guard).readYourWritesInterceptor();
+
+		assertThat(handle(interceptor, 7L)).isEqualTo("primary");
+		assertThat(handle(interceptor, 8L)).isEqualTo("replica");
+		// unpinned once the request completes
+		assertThat(readOnly()).isEqualTo("replica");
+	}
+
+	@Test
+	void stompFrameFromARecentWriterReadsThePrimary() throws Exception {
+		guard.recordWrite(7);
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(1);
+		executor.initialize();
+		try {
+			// the interceptor pins on the executor thread that runs the handler, as on clientInboundChannel
+			ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
+			channel.addInterceptor(WebSocketConfig.readYourWritesInterceptor(guard));
+			BlockingQueue<String> seen = new LinkedBlockingQueue<>();
+			channel.subscribe(message -> seen.add(readOnly()));
+
+			channel.send(frame(7L));
+			channel.send(frame(8L));
+			channel.send(frame(7L));
+
+			assertThat(List.of(seen.take(), seen.take(), seen.take())).containsExactly("primary", "replica", "primary");
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	// write-behind fans a message out before the writer thread commits it; both users read the primary
+	// from the moment it is queued, not only once it is flushed
+	@Test
+	void queuedMessagePinsItsUsersBeforeItIsFlushed() {
+		MessageService messageService = mock(MessageService.class);
+		MessagePersistencePipeline pipeline = new MessagePersistencePipeline(messageService, guard, "write-behind",
+				10, 50, 50, 100, new SimpleMeterRegistry());
+
+		pipeline.submit(new entities.Message(1, "hi", user(7), user(8), Status.SENT));
+
+		verify(messageService, never()).saveMessages(anyList());
+		assertThat(guard.wroteRecently(7)).isTrue();
+		assertThat(guard.wroteRecently(8)).isTrue();
+	}
+
+	@Test
+	void explicitCredentialsAreRoutedLikePoolConnections() throws SQLException {
+		assertThat(name(replicas.getConnection("sa", ""))).isEqualTo("replica");
+		guard.pin();
+		try {
+			assertThat(name(replicas.getConnection("sa", ""))).isEqualTo("primary");
+		} finally {
+			guard.unpin();
+		}
+	}
+
+	@Test
+	void lagProbeTakesAReplicaOutOfRotation() {
+		new JdbcTemplate(replica).execute("CREATE TABLE IF NOT EXISTS lag (Seconds_Behind_Source INT)");
+		new JdbcTemplate(replica).execute("DELETE FROM lag");
+		new JdbcTemplate(replica).execute("INSERT INTO lag VALUES (30)");
+
+		replicas.probe("SELECT Seconds_Behind_Source FROM lag", Duration.ofSeconds(5));
+
+		assertThat(readOnly()).isEqualTo("primary");
+	}
+
+	private static User user(Integer id) {
+		User user = new User();
+		user.setId(id);
+		return user;
+	}
+
+	private String readOnly() {
+		return reads.execute(tx -> whoAmI());
+	}
+
+	private String readWrite() {
+		return writes.execute(tx -> whoAmI());
+	}
+
+	private String whoAmI() {
+		return jdbc.queryForObject("SELECT name FROM node", String.class);
+	}
+
+	private String handle(HandlerInterceptor interceptor, Long userId) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setUserPrincipal(new UsernamePasswordAuthenticationToken(userId, null, List.of()));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, this);
+		try {
+			return readOnly();
+		} finally {
+			interceptor.afterCompletion(request, response, this, null);
+		}
+	}
+
+	private static Message<String> frame(Long userId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+		accessor.setUser(new UsernamePasswordAuthenticationToken(userId, null, List.of()));
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+	private static String name(Connection connection) throws SQLException {
+		try (connection; Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("SELECT name FROM node")) {
+			rs.next();
+			return rs.getString(1);
+		}
+	}
+
+	private static DataSource database(String name) {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+				"sa", "");
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(16))");
+		jdbc.execute("DELETE FROM node");
+		jdbc.update("INSERT INTO node VALUES (?)", name);
+		return dataSource;
+	}
+}
@@ -0,0 +1,90 @@
+package config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import config.SendRateLimiter.Decision;
+import config.SendRateLimiter.Limit;
+import entities.User.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// users get 2 frames/s with a burst of 3, admins 10/s with a burst of 5; the clock only moves when told
+class SendRateLimiterTests {
+
+	AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	SendRateLimiter limiter = new SendRateLimiter(meterRegistry, true, new Limit(2, 3),
+			Map.of(Role.ADMIN, new Limit(10, 5)), 4, now::get);
+
+	@Test
+	void burstThenRefillAtTheRate() {
+		for (int i = 0; i < 3; i++) {
+			assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.ALLOW);
+		}
+		assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.REJECT);
+		// one interval (500ms) buys exactly one more frame
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+		assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.ALLOW);
+		assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.REJECT);
+		// a quiet period refills up to the burst, never beyond
+		now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+		for (int i = 0; i < 3; i++) {
+			assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.ALLOW);
+		}
+		assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.REJECT);
+		assertThat(meterRegistry.get("websocket.inbound.throttled").tag("role", "USER").tag("action", "rejected")
+				.counter().count()).isEqualTo(3);
+	}
+
+	@Test
+	void bucketsArePerUserAndSizedByRole() {
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire(1L, Role.USER);
+		}
+		assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.REJECT);
+		assertThat(limiter.acquire(2L, Role.USER)).isEqualTo(Decision.ALLOW);
+		for (int i = 0; i < 5; i++) {
+			assertThat(limiter.acquire(3L, Role.ADMIN)).isEqualTo(Decision.ALLOW);
+		}
+		assertThat(limiter.acquire(3L, Role.ADMIN)).isEqualTo(Decision.REJECT);
+	}
+
+	@Test
+	void disconnectsAClientThatKeepsSending() {
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire(1L, Role.USER);
+		}
+		for (int i = 0; i < 3; i++) {
+			assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.REJECT);
+		}
+		assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.DISCONNECT);
+
+		// an accepted frame starts the count again
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+		assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.ALLOW);
+		for (int i = 0; i < 3; i++) {
+			assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.REJECT);
+		}
+		assertThat(limiter.acquire(1L, Role.USER)).isEqualTo(Decision.DISCONNECT);
+	}
+
+	@Test
+	void sweepDropsOnlyFullBuckets() {
+		limiter.acquire(1L, Role.USER);
+		limiter.acquire(2L, Role.USER);
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+		limiter.acquire(2L, Role.USER);
+		// user 1 is full again at 500ms, user 2 (two tokens out) at 1000ms
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+		limiter.sweep();
+		assertThat(limiter.size()).isEqualTo(1);
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+		limiter.sweep();
+		assertThat(limiter.size()).isZero();
+	}
+}
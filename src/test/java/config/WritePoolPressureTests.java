@@ -0,0 +1,142 @@
+package config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import service.ReadYourWritesGuard;
+
+// sends are shed while callers queue for the write pool and the smoothed wait is above 50ms
+class WritePoolPressureTests {
+
+	WritePoolPressure pressure = new WritePoolPressure(new SimpleMeterRegistry(), true, Duration.ofMillis(50));
+
+	@Test
+	void saturatedWhileThreadsWaitLongAndRecoveredOnceTheQueueDrains() {
+		FakePoolStats stats = new FakePoolStats();
+		IMetricsTracker tracker = pressure.create("writes", stats);
+		assertThat(pressure.saturated()).isFalse();
+
+		// slow acquisitions alone do not shed anything while nobody is waiting
+		for (int i = 0; i < 10; i++) {
+			tracker.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(200));
+		}
+		assertThat(pressure.saturated()).isFalse();
+
+		stats.pending = 3;
+		assertThat(pressure.saturated()).isTrue();
+
+		// fast acquisitions bring the average back under the threshold
+		for (int i = 0; i < 10; i++) {
+			tracker.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		assertThat(pressure.saturated()).isFalse();
+
+		// a timeout saturates at once, an empty queue recovers at once
+		tracker.recordConnectionTimeout();
+		assertThat(pressure.saturated()).isTrue();
+		stats.pending = 0;
+		assertThat(pressure.saturated()).isFalse();
+	}
+
+	@Test
+	void disabledNeverSaturates() {
+		WritePoolPressure disabled = new WritePoolPressure(new SimpleMeterRegistry(), false, Duration.ofMillis(50));
+		FakePoolStats stats = new FakePoolStats();
+		disabled.create("writes", stats).recordConnectionTimeout();
+		stats.pending = 3;
+
+		assertThat(disabled.saturated()).isFalse();
+	}
+
+	// the write pool DataSourceConfig builds reports to WritePoolPressure: with one connection held,
+	// two queued writers saturate it and it recovers once they are served
+	@Test
+	void writePoolFromDataSourceConfigSaturatesAndRecovers() throws Exception {
+		DataSourceConfig config = new DataSourceConfig();
+		ReflectionTestUtils.setField(config, "replicaUrls", List.of());
+		DataSourceProperties properties = new DataSourceProperties();
+		properties.setUrl("jdbc:h2:mem:pressure;DB_CLOSE_DELAY=-1");
+		properties.setUsername("sa");
+		properties.setPassword("");
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("chat.datasource.pools.writes.maximum-pool-size", "1")
+				.withProperty("chat.datasource.pools.writes.connection-timeout", "5000");
+		DataSource dataSource = config.dataSource(properties, environment,
+				new ReadYourWritesGuard(Duration.ofSeconds(5)), new SimpleMeterRegistry(), pressure);
+		ExecutorService writers = Executors.newFixedThreadPool(2);
+		try {
+			CountDownLatch release = new CountDownLatch(1);
+			Connection held = dataSource.getConnection();
+			touch(held);
+			for (int i = 0; i < 2; i++) {
+				writers.submit(() -> {
+					try (Connection connection = dataSource.getConnection()) {
+						touch(connection);
+						release.await();
+					}
+					return null;
+				});
+			}
+			Thread.sleep(400);
+			held.close();
+
+			// the first writer waited ~400ms and holds the only connection, the second is still queued
+			awaitUntil(pressure::saturated);
+
+			release.countDown();
+			awaitUntil(() -> !pressure.saturated());
+		} finally {
+			writers.shutdownNow();
+			config.destroy();
+		}
+	}
+
+	private static void touch(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("SELECT 1");
+		}
+	}
+
+	// Hikari refreshes its pool stats at most once a second
+	private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+			Thread.sleep(50);
+		}
+	}
+
+	private static final class FakePoolStats extends PoolStats {
+		volatile int pending;
+
+		FakePoolStats() {
+			super(0);
+		}
+
+		@Override
+		protected void update() {
+			pendingThreads = pending;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import dto.AdminMessageDTO;
+import dto.MessageDTO;
+import dto.SyncMessageDTO;
+import dto.UserDetail;
+import entities.Message;
+import entities.Message.Status;
+import entities.User;
+import my_app.MyAppApplication;
+
+// the read endpoints must cost one statement per page, however many rows and users are on it
+@DataJpaTest
+@ContextConfiguration(classes = MyAppApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:messages;MODE=MySQL;NON_KEYWORDS=USER",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.flyway.enabled=false",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class MessageRepositoryTests {
+
+	@Autowired
+	MessageRepository messageRepository;
+
+	@Autowired
+	ReceiverSequenceRepository receiverSequenceRepository;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	Statistics statistics;
+	User alice;
+	User bob;
+
+	@BeforeEach
+	void setUp() {
+		alice = entityManager.persist(new User(null, "alice", "alice@example.com", "secret", User.Role.USER));
+		bob = entityManager.persist(new User(null, "bob", "bob@example.com", "secret", User.Role.USER));
+		for (int i = 1; i <= 20; i++) {
+			User sender = i % 2 == 0 ? alice : bob;
+			User receiver = i % 2 == 0 ? bob : alice;
+			entityManager.persist(new Message(i, "message " + i, sender, receiver, Status.SENT));
+		}
+		entityManager.flush();
+		entityManager.clear();
+		statistics = entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void chatPageIsOneSeekPerDirection() {
+		List<MessageDTO> page = messageRepository.findLatestChatPage(alice.getId(), bob.getId(), Limit.of(10));
+
+		assertThat(page).hasSize(10);
+		assertThat(page.get(0).getStatus()).isEqualTo("SENT");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+	}
+
+	@Test
+	void chatPagesInterleaveBothDirectionsNewestFirst() {
+		List<MessageDTO> latest = messageRepository.findLatestChatPage(bob.getId(), alice.getId(), Limit.of(7));
+		MessageDTO oldest = latest.get(latest.size() - 1);
+		List<MessageDTO> older = messageRepository.findChatPageBefore(bob.getId(), alice.getId(), oldest.getSentAt(),
+				oldest.getId(), Limit.of(20));
+
+		// setUp persists all rows within the same few milliseconds, id breaks the ties
+		assertThat(latest).extracting(MessageDTO::getId).containsExactly(20, 19, 18, 17, 16, 15, 14);
+		assertThat(older).extracting(MessageDTO::getId).startsWith(13, 12).hasSize(13).doesNotHaveDuplicates();
+	}
+
+	@Test
+	void syncFollowsReceiverSeqRatherThanId() {
+		receiverSequenceRepository.advance(alice.getId(), 2);
+		receiverSequenceRepository.advance(alice.getId(), 1);
+		assertThat(receiverSequenceRepository.findLastSeq(alice.getId())).isEqualTo(3);
+
+		// 40 came from another node's id block and committed first, 30 was held back by a write-behind batch
+		persistReceived(40, 1L);
+		persistReceived(30, 2L);
+		persistReceived(35, 3L);
+
+		assertThat(messageRepository.findReceivedAfter(alice.getId(), 0L, Limit.of(10)))
+				.extracting(MessageDTO::getId).containsExactly(40, 30, 35);
+		assertThat(messageRepository.findReceivedAfter(alice.getId(), 1L, Limit.of(10)))
+				.extracting(SyncMessageDTO::getSeq).containsExactly(2L, 3L);
+	}
+
+	private void persistReceived(Integer id, Long seq) {
+		Message message = new Message(id, "message " + id, bob, alice, Status.SENT);
+		message.setReceiverSeq(seq);
+		entityManager.persist(message);
+		entityManager.flush();
+	}
+
+	@Test
+	void receiptsFollowSendTimeRatherThanId() {
+		LocalDateTime seen = LocalDateTime.of(2026, 1, 5, 12, 0);
+		// 30 came from another node's id block a second after the message the reader has seen
+		persistSent(40, seen);
+		persistSent(35, seen);
+		persistSent(30, seen.plusSeconds(1));
+
+		int updated = messageRepository.updateStatusUpTo(bob.getId(), alice.getId(), seen, 40, Status.SEEN,
+				List.of(Status.SENT, Status.DELIVERED));
+		entityManager.clear();
+
+		assertThat(updated).isEqualTo(2);
+		assertThat(entityManager.find(Message.class, 30).getStatus()).isEqualTo(Status.SENT);
+		assertThat(entityManager.find(Message.class, 35).getStatus()).isEqualTo(Status.SEEN);
+	}
+
+	private void persistSent(Integer id, LocalDateTime sentAt) {
+		Message message = new Message(id, "message " + id, bob, alice, Status.SENT);
+		message.setSentAt(sentAt);
+		entityManager.persist(message);
+		entityManager.flush();
+	}
+
+	// a nameless user matching on email is still found, and a cursor from another role is no position
+	@Test
+	void directorySearchKeepsToItsRoleAndFindsNamelessUsers() {
+		User nameless = entityManager.persist(new User(null, null, "al@example.com", "secret", User.Role.USER));
+		User admin = entityManager.persist(new User(null, "alan", "alan@example.com", "secret", User.Role.ADMIN));
+		entityManager.flush();
+
+		assertThat(userRepository.searchDirectoryByEmail(User.Role.USER, "al%", "", 0, Limit.of(10)))
+				.extracting(UserDetail::getId).containsExactly(nameless.getId());
+		assertThat(userRepository.findSearchCursor(User.Role.USER, admin.getId(), "al%", true)).isEmpty();
+		assertThat(userRepository.findSearchCursor(User.Role.USER, admin.getId(), "al%", false)).isEmpty();
+		assertThat(userRepository.findSearchCursor(User.Role.ADMIN, admin.getId(), "al%", true)).isPresent();
+	}
+
+	@Test
+	void adminPageCarriesUserNamesInOneStatement() {
+		List<AdminMessageDTO> page = messageRepository.browseMessages(null, null, null, null, null, null, Limit.of(20));
+
+		assertThat(page).hasSize(20);
+		assertThat(page).extracting(m -> m.getSender().getName()).containsOnly("alice", "bob");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+	}
+}
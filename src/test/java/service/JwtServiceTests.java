@@ -0,0 +1,46 @@
+package service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import entities.User;
+import entities.User.Role;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// tokens signed with the right key but missing a claim generateToken always sets are rejected, not thrown on
+class JwtServiceTests {
+
+	static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+	JwtService jwtService = new JwtService(SECRET, 100, new SimpleMeterRegistry());
+
+	@Test
+	void issuedTokenParses() {
+		User user = new User();
+		user.setId(7);
+		user.setRole(Role.USER);
+
+		assertThat(jwtService.parse(jwtService.generateToken(user)).getId()).isEqualTo(7L);
+	}
+
+	@Test
+	void signedTokensMissingRoleOrExpiryAreRejected() {
+		Date tomorrow = new Date(System.currentTimeMillis() + 86_400_000);
+
+		assertThat(jwtService.parse(signed().expiration(tomorrow).compact())).isNull();
+		assertThat(jwtService.parse(signed().claim("role", "USER").compact())).isNull();
+		assertThat(jwtService.parse(signed().claim("role", "NOBODY").expiration(tomorrow).compact())).isNull();
+		assertThat(jwtService.parse(signed().claim("role", "USER").expiration(tomorrow).compact())).isNotNull();
+	}
+
+	private static JwtBuilder signed() {
+		return Jwts.builder().subject("7").signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)));
+	}
+}
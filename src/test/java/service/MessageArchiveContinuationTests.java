@@ -0,0 +1,182 @@
+package service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import dto.AdminMessageDTO;
+import dto.ConversationDTO;
+import dto.MessageDTO;
+import dto.MessageFilter;
+import dto.ReceiptDTO;
+import dto.SyncBatchDTO;
+import dto.SyncMessageDTO;
+import entities.Message;
+import entities.Message.Status;
+import entities.User;
+import my_app.MyAppApplication;
+import repository.UserRepository;
+
+// Reads that run past the hot table continue in messages_archive. Alice and Bob have four archived
+// messages from January and four hot ones from October; id 9 came from another node's id block, so it
+// is archived although it is above every hot id.
+@SpringBootTest(classes = MyAppApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = {
+				"spring.datasource.url=jdbc:h2:mem:archive;MODE=MySQL;NON_KEYWORDS=USER;IGNORE_UNKNOWN_SETTINGS=TRUE",
+				"spring.datasource.driver-class-name=org.h2.Driver",
+				"spring.datasource.username=sa",
+				"spring.datasource.password=",
+				"spring.flyway.enabled=false",
+				"spring.jpa.hibernate.ddl-auto=create-drop",
+				"chat.search.rebuild-if-empty=false",
+				"chat.archive.enabled=false"
+		})
+class MessageArchiveContinuationTests {
+
+	@TempDir
+	static Path indexDir;
+
+	@DynamicPropertySource
+	static void indexDir(DynamicPropertyRegistry registry) {
+		registry.add("chat.search.index-dir", () -> indexDir.toString());
+	}
+
+	@Autowired
+	MessageService messageService;
+
+	@Autowired
+	MessageArchiveService messageArchiveService;
+
+	@Autowired
+	ReceiptService receiptService;
+
+	@Autowired
+	UnreadReconciliationJob unreadReconciliationJob;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	Integer alice;
+	Integer bob;
+
+	@BeforeEach
+	void setUp() {
+		jdbcTemplate.update("DELETE FROM messages");
+		jdbcTemplate.update("DELETE FROM messages_archive");
+		jdbcTemplate.update("DELETE FROM conversations");
+		jdbcTemplate.update("DELETE FROM unread_counters");
+		userRepository.deleteAll();
+		alice = userRepository.save(new User(null, "alice", "alice@example.com", "secret", User.Role.USER)).getId();
+		bob = userRepository.save(new User(null, "bob", "bob@example.com", "secret", User.Role.USER)).getId();
+
+		// id, from, to, day, seq on the receiver's side
+		archived(1, alice, bob, 1, 1);
+		archived(2, bob, alice, 2, 1);
+		archived(3, alice, bob, 3, 2);
+		archived(9, alice, bob, 4, 3);
+		hot(5, alice, bob, 1, 4);
+		hot(6, bob, alice, 2, 2);
+		hot(7, alice, bob, 3, 5);
+		hot(8, alice, bob, 4, 6);
+		messageArchiveService.refreshWatermark();
+	}
+
+	@Test
+	void chatHistoryContinuesIntoTheArchive() {
+		List<MessageDTO> latest = messageService.getChatHistory(alice, bob, null, null, 3);
+		MessageDTO cursor = latest.get(0);
+		List<MessageDTO> older = messageService.getChatHistory(alice, bob, cursor.getSentAt(), cursor.getId(), 3);
+		cursor = older.get(0);
+		List<MessageDTO> oldest = messageService.getChatHistory(alice, bob, cursor.getSentAt(), cursor.getId(), 3);
+
+		assertThat(latest).extracting(MessageDTO::getId).containsExactly(6, 7, 8);
+		assertThat(older).extracting(MessageDTO::getId).containsExactly(3, 9, 5);
+		assertThat(oldest).extracting(MessageDTO::getId).containsExactly(1, 2);
+	}
+
+	@Test
+	void adminPagesMergeBothTiersById() {
+		List<AdminMessageDTO> first = messageService.getAllMessages(new MessageFilter(), null, 5);
+		List<AdminMessageDTO> second = messageService.getAllMessages(new MessageFilter(), 5, 5);
+
+		assertThat(first).extracting(MessageDTO::getId).containsExactly(9, 8, 7, 6, 5);
+		assertThat(second).extracting(MessageDTO::getId).containsExactly(3, 2, 1);
+	}
+
+	@Test
+	void syncMergesBothTiersBySeq() {
+		SyncBatchDTO first = messageService.getMissedMessages(bob, null, 4);
+		SyncBatchDTO second = messageService.getMissedMessages(bob, first.getCursor(), 4);
+
+		assertThat(first.getMessages()).extracting(MessageDTO::getId).containsExactly(1, 3, 9, 5);
+		assertThat(first.getCursor()).isEqualTo(4L);
+		assertThat(first.isHasMore()).isTrue();
+		assertThat(second.getMessages()).extracting(SyncMessageDTO::getSeq).containsExactly(5L, 6L);
+		assertThat(second.isHasMore()).isFalse();
+	}
+
+	// receipts never reach the archive, so its rows must not count as unread once the counters are rebuilt
+	@Test
+	void archivedUnseenMessagesDoNotKeepBadgesUpAfterReconciliation() {
+		unreadReconciliationJob.reconcile();
+		assertThat(messageService.getUnreadTotal(bob)).isEqualTo(3);
+		assertThat(messageService.getUnreadCount(bob, alice)).isEqualTo(3);
+
+		receiptService.submit(new ReceiptDTO(alice, bob, LocalDateTime.of(2026, 10, 4, 12, 0), 8, "seen"));
+		receiptService.flush();
+
+		assertThat(messageService.getUnreadTotal(bob)).isZero();
+		assertThat(messageService.getUnreadCount(bob, alice)).isZero();
+		unreadReconciliationJob.reconcile();
+		assertThat(messageService.getUnreadTotal(bob)).isZero();
+	}
+
+	@Test
+	void lastMessageIsTheLatestSentRatherThanTheHighestId() {
+		unreadReconciliationJob.reconcile();
+		assertThat(messageService.getLatestChats(bob)).extracting(ConversationDTO::getId).containsExactly(8);
+
+		// 4 drew a low id on another node but was sent last; 20 has the highest id but was sent earlier
+		messageService.saveMessage(message(4, bob, alice, LocalDateTime.of(2026, 10, 10, 12, 0)));
+		messageService.saveMessage(message(20, alice, bob, LocalDateTime.of(2026, 10, 9, 12, 0)));
+
+		ConversationDTO latest = messageService.getLatestChats(bob).get(0);
+		assertThat(latest.getId()).isEqualTo(4);
+		assertThat(latest.getSentAt()).isEqualTo(LocalDateTime.of(2026, 10, 10, 12, 0));
+		unreadReconciliationJob.reconcile();
+		assertThat(messageService.getLatestChats(bob)).extracting(ConversationDTO::getId).containsExactly(4);
+	}
+
+	private Message message(int id, Integer senderId, Integer receiverId, LocalDateTime sentAt) {
+		Message message = new Message(id, "message " + id, userRepository.findById(senderId).orElseThrow(),
+				userRepository.findById(receiverId).orElseThrow(), Status.SENT);
+		message.setSentAt(sentAt);
+		return message;
+	}
+
+	private void archived(int id, Integer senderId, Integer receiverId, int day, long seq) {
+		jdbcTemplate.update("INSERT INTO messages_archive (id, sender_id, receiver_id, message_text, status, sent_at, "
+				+ "receiver_seq) VALUES (?, ?, ?, ?, 'SENT', ?, ?)", id, senderId, receiverId, "message " + id,
+				LocalDateTime.of(2026, 1, day, 12, 0), seq);
+	}
+
+	private void hot(int id, Integer senderId, Integer receiverId, int day, long seq) {
+		jdbcTemplate.update("INSERT INTO messages (id, sender_id, receiver_id, message_text, status, sent_at, "
+				+ "receiver_seq) VALUES (?, ?, ?, ?, 'SENT', ?, ?)", id, senderId, receiverId, "message " + id,
+				LocalDateTime.of(2026, 10, day, 12, 0), seq);
+	}
+}
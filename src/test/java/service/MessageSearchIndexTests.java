@@ -0,0 +1,95 @@
+package service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import dto.MessageDTO;
+import dto.MessageSearchHitDTO;
+import dto.MessageSearchResultDTO;
+import entities.Message.Status;
+import repository.ArchivedMessageRepository;
+import repository.MessageRepository;
+
+class MessageSearchIndexTests {
+
+	@TempDir
+	Path indexDir;
+
+	MessageRepository messageRepository = mock(MessageRepository.class);
+	ArchivedMessageRepository archivedMessageRepository = mock(ArchivedMessageRepository.class);
+	MessageSearchIndex index;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		index = new MessageSearchIndex(messageRepository, archivedMessageRepository,
+				mock(PlatformTransactionManager.class),
+				indexDir.toString(), 20, 100, 1000);
+		LocalDateTime now = LocalDateTime.now();
+		index.index(1, 1, 2, now, "lunch at the <b>new</b> ramen place?");
+		index.index(2, 2, 1, now, "ramen ramen ramen, always ramen");
+		index.index(3, 3, 4, now, "ramen tonight");
+		index.index(4, 1, 3, now, "see you at lunch");
+		index.refresh();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		index.destroy();
+	}
+
+	@Test
+	void onlySearchesTheCallersConversations() {
+		MessageSearchResultDTO result = index.search(1, "ramen", null, 0, 10);
+
+		assertThat(result.getTotalHits()).isEqualTo(2);
+		// the denser match ranks first
+		assertThat(result.getHits()).extracting(MessageSearchHitDTO::getId).containsExactly(2, 1);
+	}
+
+	@Test
+	void narrowsToOnePartnerAndEscapesHighlights() {
+		MessageSearchResultDTO result = index.search(1, "lunch", 2, 0, 10);
+
+		assertThat(result.getHits()).singleElement().satisfies(hit -> {
+			assertThat(hit.getId()).isEqualTo(1);
+			assertThat(hit.getHighlight()).contains("<mark>lunch</mark>").contains("&lt;b&gt;new&lt;&#x2F;b&gt;");
+		});
+	}
+
+	@Test
+	void rebuildKeepsServingTheOldIndexUntilTheNewOneIsComplete() throws Exception {
+		LocalDateTime now = LocalDateTime.now();
+		when(archivedMessageRepository.streamMessages(null, null, null, null, null))
+				.thenReturn(Stream.of(new MessageDTO(2, "ramen again", now, Status.SEEN, 2, 1)));
+		when(messageRepository.streamMessages(null, null, null, null, null)).thenAnswer(invocation -> {
+			// mid-rebuild: searches still see the old documents, and a message saved now is not lost
+			assertThat(index.search(1, "ramen", null, 0, 10).getTotalHits()).isEqualTo(2);
+			index.index(5, 2, 1, now, "ramen is saved during the rebuild");
+			return Stream.of(new MessageDTO(6, "ramen from the table", now, Status.SENT, 1, 2));
+		});
+
+		assertThat(index.rebuild()).isEqualTo(2);
+
+		assertThat(index.search(1, "ramen", null, 0, 10).getHits())
+				.extracting(MessageSearchHitDTO::getId)
+				.containsExactlyInAnyOrder(2, 5, 6);
+		// the old generation is gone and a restart opens the new one
+		index.destroy();
+		assertThat(Files.list(indexDir).filter(Files::isDirectory).count()).isEqualTo(1);
+		index = new MessageSearchIndex(messageRepository, archivedMessageRepository,
+				mock(PlatformTransactionManager.class), indexDir.toString(), 20, 100, 1000);
+		assertThat(index.search(1, "ramen", null, 0, 10).getTotalHits()).isEqualTo(3);
+	}
+}
@@ -0,0 +1,94 @@
+package service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import dto.ReceiptDTO;
+import entities.Message;
+import entities.Message.Status;
+
+// user 2 reads what user 1 (and user 3) sent; MessageService is a mock, so nothing is stored
+class ReceiptServiceTests {
+
+	static final LocalDateTime NOON = LocalDateTime.of(2026, 10, 18, 12, 0);
+
+	MessageService messageService = mock(MessageService.class);
+	SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	ReceiptService receipts = new ReceiptService(messageService, messagingTemplate);
+
+	@Test
+	void failedUpdateIsRetriedAndDoesNotStopTheOtherPairs() {
+		when(messageService.markUpTo(1, 2, NOON, 10, Status.SEEN))
+				.thenThrow(new QueryTimeoutException("lock wait"))
+				.thenReturn(1);
+		receipts.submit(new ReceiptDTO(1, 2, NOON, 10, "seen"));
+		receipts.submit(new ReceiptDTO(3, 2, NOON, 20, "seen"));
+
+		receipts.flush();
+
+		verify(messageService).markUpTo(3, 2, NOON, 20, Status.SEEN);
+		verify(messagingTemplate, never()).convertAndSendToUser(eq("1"), any(), any());
+
+		receipts.flush();
+
+		verify(messageService, times(2)).markUpTo(1, 2, NOON, 10, Status.SEEN);
+		verify(messagingTemplate).convertAndSendToUser(eq("1"), any(), any());
+		// applied receipts leave the queue
+		receipts.flush();
+		verify(messageService, times(2)).markUpTo(1, 2, NOON, 10, Status.SEEN);
+		verify(messageService).markUpTo(3, 2, NOON, 20, Status.SEEN);
+	}
+
+	@Test
+	void receiptIsAppliedAgainToMessagesSavedAfterIt() {
+		receipts.submit(new ReceiptDTO(1, 2, NOON, 10, "seen"));
+		receipts.flush();
+
+		// 11 was sent after the receipt's message, and so was 7 from another node's id block
+		receipts.onMessagesSaved(new MessagesSavedEvent(List.of(message(11, 1, 2, NOON),
+				message(7, 1, 2, NOON.plusSeconds(1)))));
+		receipts.flush();
+		verify(messageService).markUpTo(1, 2, NOON, 10, Status.SEEN);
+
+		// 9 was still in the write-behind queue when the receipt was applied, 12 came from another node earlier
+		receipts.onMessagesSaved(new MessagesSavedEvent(List.of(message(9, 1, 2, NOON),
+				message(8, 2, 1, NOON.minusSeconds(1)))));
+		receipts.flush();
+		verify(messageService, times(2)).markUpTo(1, 2, NOON, 10, Status.SEEN);
+		receipts.onMessagesSaved(new MessagesSavedEvent(List.of(message(12, 1, 2, NOON.minusSeconds(1)))));
+		receipts.flush();
+		verify(messageService, times(3)).markUpTo(1, 2, NOON, 10, Status.SEEN);
+		verify(messageService, never()).markUpTo(eq(2), eq(1), any(), any(), any());
+	}
+
+	@Test
+	void laterReceiptWinsBySendTimeNotById() {
+		receipts.submit(new ReceiptDTO(1, 2, NOON.plusSeconds(1), 7, "seen"));
+		receipts.submit(new ReceiptDTO(1, 2, NOON, 10, "seen"));
+		receipts.flush();
+
+		verify(messageService).markUpTo(1, 2, NOON.plusSeconds(1), 7, Status.SEEN);
+		verify(messageService, never()).markUpTo(1, 2, NOON, 10, Status.SEEN);
+	}
+
+	private static Message message(Integer id, Integer senderId, Integer receiverId, LocalDateTime sentAt) {
+		Message message = new Message();
+		message.setId(id);
+		message.setSentAt(sentAt);
+		message.setSenderId(senderId);
+		message.setReceiverId(receiverId);
+		return message;
+	}
+}